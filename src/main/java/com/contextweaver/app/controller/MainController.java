@@ -1,7 +1,23 @@
 package com.contextweaver.app.controller;
 
 import com.contextweaver.app.model.FileNode;
+import com.contextweaver.app.model.FilterMode;
+import com.contextweaver.app.model.Workspace;
+import com.contextweaver.app.model.WorkspaceRoot;
+import com.contextweaver.app.service.DuplicateFinder;
+import com.contextweaver.app.service.GitChangeScanner;
+import com.contextweaver.app.service.ProjectScanner;
+import com.contextweaver.app.service.SelectionPresets;
+import com.contextweaver.app.service.SelectionSummary;
+import com.contextweaver.app.service.SourceOutliner;
+import com.contextweaver.app.service.SummaryCalculator;
+import com.contextweaver.app.service.WeaveOptions;
+import com.contextweaver.app.service.WeaveResult;
+import com.contextweaver.app.service.Weaver;
+import com.contextweaver.app.service.format.OutputFormat;
+import com.contextweaver.app.service.format.OutputFormats;
 import com.contextweaver.app.view.MainView;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.scene.control.*;
@@ -12,175 +28,90 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Stream;
+import java.util.function.Predicate;
 
 public class MainController {
 
     private final MainView view;
     private final Stage stage;
     private final Label selectedPathLabel;
-    private Path currentRootPath;
+
+    // Arbeidsområdet: én eller flere rotmapper som skannes og veves sammen
+    private Workspace workspace = new Workspace();
 
     // Holder på den komplette trestrukturen (etter filtrering)
     private CheckBoxTreeItem<FileNode> masterTreeRoot;
 
-    // Holder på hvilke filer som er valgt på tvers av filtreringsmoduser
+    // Flat visning (kun filer) når mappene er skjult, ellers null
+    private CheckBoxTreeItem<FileNode> flatTreeRoot;
+
+    // Holder på hvilke filer som er valgt på tvers av filtreringsmoduser.
+    // Oppdateres fortløpende når en fil velges/fravelges, så filer som ennå ikke er skannet beholder valget sitt.
     private final Set<Path> persistentSelections = new HashSet<>();
 
-    // Filtreringsmodus
-    private enum FilterMode {
-        SMART,      // Skjuler cache/build/IDE-mapper osv.
-        ALL_FILES   // Viser alle mapper/filer (bortsett fra binært/media/.env/lockfiles)
-    }
+    // Settes mens vi endrer mange valg på en gang, slik at sammendraget regnes ut én gang til slutt
+    private boolean suppressSummaryUpdates = false;
 
-    private FilterMode currentFilterMode = FilterMode.SMART;
+    // Filer som er merket for outline enkeltvis (høyreklikk i treet), på tvers av omlastinger
+    private final Set<Path> outlinedPaths = new HashSet<>();
 
-    /**
-     * Mapper / filer som skjules i SMART-modus.
-     * Typisk: build-output, cache, IDE, verktøy-mapper osv.
-     */
-    private static final List<String> DEFAULT_EXCLUDED_ITEMS = Arrays.asList(
-            // VCS / IDE / verktøy
-            ".git", ".svn", ".hg",
-            ".idea", ".vscode", ".fleet", ".settings",
-            ".gradle", ".terraform", ".dart_tool",
-
-            // Java / JVM / build
-            "target", "build", "out", "classes", ".scannerwork",
-
-            // Node / frontend / React / Next.js / diverse JS-rammeverk
-            "node_modules", ".next", ".turbo", ".vercel",
-            ".parcel-cache", ".yarn", ".pnpm-store", ".cache",
-            ".nuxt", ".svelte-kit",
-            "dist", "coverage", "storybook-static",
-
-            // Python / backend
-            "__pycache__", ".pytest_cache", ".mypy_cache", ".ruff_cache", ".tox", ".eggs",
-            "venv", ".venv", "env", ".venv.bak", ".conda",
-            "migrations", "alembic",
-
-            // Flutter / mobil
-            ".dart_tool", "build"
-    );
+    private final GitChangeScanner gitChangeScanner = new GitChangeScanner();
 
-    /**
-     * Vanlige kode-, konfig- og prosjektfiler vi typisk vil ha med i en AI-kontekst.
-     * Brukes av "Velg vanlige kodefiler"-preset.
-     */
-    private static final List<String> COMMON_CODE_EXTENSIONS = Arrays.asList(
-            // JVM / Java / Kotlin / Android
-            ".java", ".kt", ".kts",
-            ".groovy", ".gradle", ".gradle.kts",
-            ".properties",
-            "pom.xml", "build.gradle", "build.gradle.kts",
-            "settings.gradle", "settings.gradle.kts",
-            ".xml", ".yml", ".yaml",
-
-            // JavaScript / TypeScript / React / Next.js / frontend
-            ".js", ".jsx", ".ts", ".tsx",
-            ".mjs", ".cjs",
-            ".json",
-            ".html", ".htm",
-            ".css", ".scss", ".sass", ".less",
-
-            // Flutter / Dart
-            ".dart",
-            "pubspec.yaml", "analysis_options.yaml",
-
-            // Python
-            ".py", ".pyw",
-            ".toml", ".ini", ".cfg",
-            ".yaml", ".yml",
-
-            // C# / .NET
-            ".cs", ".fs", ".vb",
-
-            // C / C++ / Rust / Go
-            ".c", ".h", ".hpp", ".hh", ".cpp", ".cc", ".cxx",
-            ".rs", ".go",
-
-            // PHP / Ruby
-            ".php", ".phtml",
-            ".rb", ".rake",
-
-            // Swift / Obj-C
-            ".swift", ".m", ".mm",
-
-            // SQL / databasedefinisjoner
-            ".sql",
-
-            // Infra / devops / scripts
-            "Dockerfile",
-            "docker-compose.yml", "docker-compose.yaml",
-            ".sh", ".bash", ".zsh", ".ps1", ".bat",
-            "Makefile",
-
-            // Dokumentasjon / meta
-            ".md", ".markdown", ".txt", ".adoc", ".rst",
-
-            // Konfig-eksempler
-            ".env.example", ".env.template"
-    );
+    // Hasher for duplikatsjekk, delt mellom sammendraget og vevingen
+    private final DuplicateFinder duplicateFinder = new DuplicateFinder();
 
-    /**
-     * Filtyper vi aldri vil ha med (binært, media, store artefakter, runtime-filer osv.).
-     * Gjelder i både SMART og ALL_FILES.
-     */
-    private static final List<String> ALWAYS_EXCLUDED_FILE_EXTENSIONS = Arrays.asList(
-            // Compiled / bytecode
-            ".class", ".pyc", ".pyo", ".o", ".obj",
+    // Sammendraget regnes ut i bakgrunnen; kun siste forespørsel får oppdatere GUI-et
+    private final SummaryCalculator summaryCalculator = new SummaryCalculator(duplicateFinder);
+    private final AtomicLong summaryGeneration = new AtomicLong();
+    private final ExecutorService summaryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "selection-summary");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-            // Arkiver / pakker / artefakter
-            ".zip", ".tar", ".gz", ".tgz", ".rar", ".7z",
-            ".jar", ".war", ".ear",
-            ".apk", ".aab", ".ipa",
+    // Holder på rendrede filsegmenter mellom vevinger, slik at kun endrede filer leses på nytt
+    private final Weaver weaver = new Weaver(duplicateFinder);
 
-            // Executables / libs
-            ".exe", ".dll", ".so", ".dylib", ".bin",
+    // Sist brukte output-fil, foreslås på nytt ved neste veving (gjør in-place patching mulig)
+    private File lastOutputFile;
 
-            // Bilder / media
-            ".png", ".jpg", ".jpeg", ".gif", ".bmp", ".svg", ".ico",
-            ".mp3", ".wav", ".ogg", ".flac",
-            ".mp4", ".mov", ".avi", ".mkv", ".webm",
+    // Filtreringsmodus for nye røtter (og for alle røtter når ingen rot er valgt i listen)
+    private FilterMode defaultFilterMode = FilterMode.SMART;
 
-            // Fonts
-            ".ttf", ".otf", ".eot", ".woff", ".woff2",
+    // Settes mens vi oppdaterer comboboxen programmatisk, slik at det ikke trigger ny lasting
+    private boolean updatingFilterModeComboBox = false;
 
-            // Databaser / større datafiler
-            ".db", ".sqlite", ".sqlite3",
+    // Egen trådpool for skanning, slik at alle røtter i arbeidsområdet skannes samtidig
+    private final ExecutorService scanExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "workspace-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-            // Logg- og runtime-filer
-            ".log"
-    );
+    private final ProjectScanner projectScanner = new ProjectScanner();
 
-    /**
-     * Filnavn vi eksplisitt aldri vil ha med (lockfiles, hemmelige .env-filer etc.).
-     * Gjelder i både SMART og ALL_FILES.
-     */
-    private static final List<String> ALWAYS_EXCLUDED_FILE_NAMES = Arrays.asList(
-            // JS / package managers
-            "package-lock.json",
-            "yarn.lock",
-            "pnpm-lock.yaml",
-
-            // Øvrige lockfiles
-            "composer.lock",
-            "Cargo.lock",
-            "poetry.lock",
-            "Pipfile.lock",
-
-            // Miljøfiler (inneholder ofte hemmeligheter)
-            ".env",
-            ".env.local",
-            ".env.development",
-            ".env.production",
-            ".env.test"
-    );
+    // Pågående lasting (null når treet er ferdig lastet). En ny lasting avbryter alltid den forrige.
+    private ScanSession currentScan;
+
+    // Maks tid per frame vi bruker på å legge skannede mapper inn i treet, så GUI-et holder seg responsivt
+    private static final long SCAN_FRAME_BUDGET_NANOS = 8_000_000L;
+    private static final long SCAN_STATUS_INTERVAL_NANOS = 100_000_000L;
+    private long lastScanStatusNanos;
+
+    // Tømmer skannekøen én gang per frame mens en lasting pågår
+    private final AnimationTimer scanTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drainScan(now);
+        }
+    };
 
     public MainController(MainView view, Stage stage, Label selectedPathLabel) {
         this.view = view;
@@ -191,19 +122,50 @@ public class MainController {
 
     private void attachEventHandlers() {
         view.getSelectDirButton().setOnAction(e -> selectDirectory());
+        view.getAddRootButton().setOnAction(e -> addRootDirectory());
+        view.getRemoveRootButton().setOnAction(e -> removeSelectedRoot());
         view.getGenerateButton().setOnAction(e -> generateFile());
-        view.getPresetCodeButton().setOnAction(e -> selectPreset(COMMON_CODE_EXTENSIONS));
+        view.getPresetCodeButton().setOnAction(e -> selectPreset(SelectionPresets.COMMON_CODE_EXTENSIONS));
         view.getDeselectAllButton().setOnAction(e -> deselectAll());
+        view.getToggleOutlineMenuItem().setOnAction(e -> toggleOutlineForSelectedItem());
+        view.getOutlineAllCheckBox().selectedProperty().addListener((obs, oldVal, newVal) -> updateSummary());
+        view.getDeduplicateCheckBox().selectedProperty().addListener((obs, oldVal, newVal) -> updateSummary());
 
-        // Filtreringsmodus endret
-        view.getFilterModeComboBox().getSelectionModel().selectedIndexProperty().addListener((obs, oldVal, newVal) -> {
+        // Valgt rot endret: vis rotens filtreringsmodus i comboboxen
+        view.getRootListView().getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal == null) return;
+            updatingFilterModeComboBox = true;
+            view.getFilterModeComboBox().getSelectionModel().select(newVal.getFilterMode().ordinal());
+            updatingFilterModeComboBox = false;
+        });
+
+        // Filtreringsmodus endret: gjelder valgt rot, eller alle røtter hvis ingen er valgt
+        view.getFilterModeComboBox().getSelectionModel().selectedIndexProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal == null || updatingFilterModeComboBox) return;
             int idx = newVal.intValue();
-            currentFilterMode = (idx == 0) ? FilterMode.SMART : FilterMode.ALL_FILES;
+            if (idx < 0 || idx >= FilterMode.values().length) return;
+            FilterMode mode = FilterMode.values()[idx];
 
-            // Hvis vi allerede har en mappe lastet, bygg treet på nytt med ny filtrering
-            if (currentRootPath != null) {
-                loadDirectory(currentRootPath);
+            WorkspaceRoot selectedRoot = view.getRootListView().getSelectionModel().getSelectedItem();
+            if (selectedRoot != null) {
+                selectedRoot.setFilterMode(mode);
+            } else {
+                defaultFilterMode = mode;
+                workspace.getRoots().forEach(root -> root.setFilterMode(mode));
+            }
+
+            // Hvis vi allerede har mapper lastet, bygg treet på nytt med ny filtrering
+            if (!workspace.isEmpty()) {
+                loadWorkspace(false);
+            }
+        });
+
+        // Ny base-ref i git-modus: last endrede filer på nytt
+        view.getBaseRefField().setOnAction(e -> {
+            boolean anyGitRoot = workspace.getRoots().stream()
+                    .anyMatch(root -> root.getFilterMode() == FilterMode.GIT_CHANGED);
+            if (anyGitRoot) {
+                loadWorkspace(false);
             }
         });
 
@@ -229,9 +191,15 @@ public class MainController {
             Dragboard db = event.getDragboard();
             boolean success = false;
             if (db.hasFiles()) {
-                File file = db.getFiles().get(0);
-                if (file.isDirectory()) {
-                    loadDirectory(file.toPath());
+                // Alle mapper som slippes samtidig blir røtter i samme arbeidsområde
+                List<Path> directories = new ArrayList<>();
+                for (File file : db.getFiles()) {
+                    if (file.isDirectory()) {
+                        directories.add(file.toPath());
+                    }
+                }
+                if (!directories.isEmpty()) {
+                    openWorkspace(directories);
                     success = true;
                 }
             }
@@ -245,109 +213,276 @@ public class MainController {
         chooser.setTitle("Velg Prosjektmappe");
         File selectedDir = chooser.showDialog(stage);
         if (selectedDir != null) {
-            loadDirectory(selectedDir.toPath());
+            openWorkspace(List.of(selectedDir.toPath()));
         }
     }
 
-    private void addSelectionListenerToAll(TreeItem<FileNode> item) {
-        if (item instanceof CheckBoxTreeItem) {
-            ((CheckBoxTreeItem<FileNode>) item).selectedProperty().addListener((obs, oldVal, newVal) -> updateSummary());
+    private void addRootDirectory() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Legg til rotmappe i arbeidsområdet");
+        File selectedDir = chooser.showDialog(stage);
+        if (selectedDir != null) {
+            try {
+                workspace.addRoot(selectedDir.toPath(), defaultFilterMode);
+            } catch (IllegalArgumentException e) {
+                new Alert(Alert.AlertType.WARNING, "Kan ikke legge til roten: " + e.getMessage()).show();
+                return;
+            }
+            loadWorkspace(false);
         }
-        for (TreeItem<FileNode> child : item.getChildren()) {
-            addSelectionListenerToAll(child);
+    }
+
+    private void removeSelectedRoot() {
+        WorkspaceRoot selectedRoot = view.getRootListView().getSelectionModel().getSelectedItem();
+        if (selectedRoot == null) return;
+        workspace.removeRoot(selectedRoot);
+        loadWorkspace(false);
+    }
+
+    /**
+     * Erstatter arbeidsområdet med de oppgitte mappene.
+     * Er det samme mapper som før, lastes de bare på nytt og valgene beholdes.
+     */
+    private void openWorkspace(List<Path> directories) {
+        Workspace newWorkspace = new Workspace();
+        try {
+            for (Path directory : directories) {
+                newWorkspace.addRoot(directory, defaultFilterMode);
+            }
+        } catch (IllegalArgumentException e) {
+            new Alert(Alert.AlertType.WARNING, "Kan ikke åpne mappene sammen: " + e.getMessage()).show();
+            return;
+        }
+
+        List<Path> currentPaths = new ArrayList<>();
+        workspace.getRoots().forEach(root -> currentPaths.add(root.getPath()));
+        List<Path> newPaths = new ArrayList<>();
+        newWorkspace.getRoots().forEach(root -> newPaths.add(root.getPath()));
+
+        if (currentPaths.equals(newPaths)) {
+            loadWorkspace(false);
+        } else {
+            this.workspace = newWorkspace;
+            loadWorkspace(true);
         }
     }
 
     /**
-     * Sentralt filter: bestemmer om en path skal hoppes over (ikke være med i treet).
-     * - ALLTID ekskluderer binære/media/.env/lockfiles.
-     * - I SMART-modus ekskluderer vi i tillegg DEFAULT_EXCLUDED_ITEMS (cache/build/IDE osv.).
+     * Skanner alle røtter i arbeidsområdet samtidig og slår dem sammen til ett tre.
+     * Med én rot er treet identisk med før; med flere røtter legges de under en felles arbeidsområde-node.
+     * Treet fylles gradvis mens skanningen pågår, og en ny lasting avbryter den forrige.
      */
-    private boolean shouldSkipPath(Path path) {
-        String name = path.getFileName().toString();
+    private void loadWorkspace(boolean resetSelections) {
+        view.getRootListView().getItems().setAll(workspace.getRoots());
+        cancelScan();
 
-        // Hvis det er en fil, sjekk navn + extension (gjelder i begge moduser)
-        if (Files.isRegularFile(path)) {
-            String lowerName = name.toLowerCase(Locale.ROOT);
+        if (resetSelections) {
+            // Nytt arbeidsområde: nullstill tidligere valg og cache
+            persistentSelections.clear();
+            outlinedPaths.clear();
+            weaver.clearCache();
+            summaryCalculator.clear();
+        }
 
-            // Spesifikke filnavn (lockfiles, .env osv.)
-            if (ALWAYS_EXCLUDED_FILE_NAMES.contains(lowerName)) {
-                return true;
-            }
+        if (workspace.isEmpty()) {
+            masterTreeRoot = null;
+            flatTreeRoot = null;
+            view.getFileTreeView().setRoot(null);
+            selectedPathLabel.setText("Dra og slipp en prosjektmappe her, eller klikk på knappen for å velge.");
+            updateSummary();
+            return;
+        }
 
-            // Filendelser vi aldri vil ha med
-            for (String ext : ALWAYS_EXCLUDED_FILE_EXTENSIONS) {
-                if (lowerName.endsWith(ext)) {
-                    return true;
-                }
-            }
+        // Øyeblikksbilde av røtter og moduser, og base-ref lest på FX-tråden
+        Workspace snapshot = new Workspace(workspace);
+        List<WorkspaceRoot> roots = snapshot.getRoots();
+        List<FilterMode> modes = new ArrayList<>();
+        roots.forEach(root -> modes.add(root.getFilterMode()));
+        String baseRef = view.getBaseRefField().getText();
+
+        selectedPathLabel.setText("Laster: " + describeWorkspace(snapshot));
+
+        ScanSession session = new ScanSession(snapshot);
+        currentScan = session;
+
+        // Rotnodene lages med én gang; innholdet legges til etter hvert som skanningen finner det
+        List<CheckBoxTreeItem<FileNode>> rootItems = new ArrayList<>();
+        for (int i = 0; i < roots.size(); i++) {
+            WorkspaceRoot root = roots.get(i);
+            // Med flere røtter vises rotens unike navn (samme navn som brukes foran stiene i output)
+            FileNode node = snapshot.isMultiRoot() ? new FileNode(root.getPath(), root.getLabel()) : new FileNode(root.getPath());
+            CheckBoxTreeItem<FileNode> item = new CheckBoxTreeItem<>(node);
+            item.setExpanded(true);
+            session.registerDirectory(i, root.getPath(), item);
+            rootItems.add(item);
         }
+        if (rootItems.size() == 1) {
+            masterTreeRoot = rootItems.get(0);
+        } else {
+            masterTreeRoot = new CheckBoxTreeItem<>(
+                    new FileNode(snapshot.getCommonAncestor(), "Arbeidsområde (" + rootItems.size() + " røtter)"));
+            masterTreeRoot.setExpanded(true);
+            masterTreeRoot.getChildren().addAll(rootItems);
+        }
+        updateTreeViewVisibility();
 
-        // SMART-modus: ekskluder kjente støy-mapper / filer
-        if (currentFilterMode == FilterMode.SMART) {
-            if (DEFAULT_EXCLUDED_ITEMS.contains(name)) {
-                return true;
-            }
+        view.getStatusLabel().textProperty().unbind();
+        if (roots.size() > 1) {
+            view.getStatusLabel().setText("Laster " + roots.size() + " rotmapper samtidig...");
+        } else if (modes.get(0) == FilterMode.GIT_CHANGED) {
+            view.getStatusLabel().setText("Leser endrede filer fra git...");
+        } else {
+            view.getStatusLabel().setText("Laster filstruktur...");
         }
+        updateSummary();
 
-        // ALL_FILES-modus: vi hopper IKKE over DEFAULT_EXCLUDED_ITEMS,
-        // men binært/media/.env/lockfiles er allerede filtrert over.
-        return false;
+        // Én skanneoppgave per rot, slik at total tid blir omtrent som for den tregeste roten
+        for (int i = 0; i < roots.size(); i++) {
+            int rootIndex = i;
+            Path rootPath = roots.get(i).getPath();
+            FilterMode mode = modes.get(i);
+            session.addScan(scanExecutor.submit(() -> scanRoot(session, rootIndex, rootPath, mode, baseRef)));
+        }
+        lastScanStatusNanos = 0;
+        scanTimer.start();
     }
 
-    private void loadDirectory(Path rootPath) {
-        boolean sameRoot = Objects.equals(this.currentRootPath, rootPath);
-
-        // Hvis vi bytter til en annen mappe, nullstill tidligere valg
-        if (!sameRoot) {
-            persistentSelections.clear();
+    /**
+     * Kjører på en skannetråd: leser roten og legger hver mappe i sesjonens kø.
+     */
+    private void scanRoot(ScanSession session, int rootIndex, Path rootPath, FilterMode mode, String baseRef) {
+        ProjectScanner.Listener listener = (directory, children) -> session.publish(rootIndex, directory, children);
+        try {
+            if (mode == FilterMode.GIT_CHANGED) {
+                List<Path> changed = gitChangeScanner.findChangedFiles(rootPath, baseRef, session::isCancelled);
+                projectScanner.scanPaths(rootPath, changed, mode, listener, session::isCancelled);
+            } else {
+                projectScanner.scan(rootPath, mode, listener, session::isCancelled);
+            }
+        } catch (CancellationException e) {
+            // En nyere lasting har tatt over
+        } catch (Exception e) {
+            session.fail(e);
+        } finally {
+            session.rootFinished();
         }
+    }
 
-        this.currentRootPath = rootPath;
-        selectedPathLabel.setText("Laster: " + rootPath);
+    private void cancelScan() {
+        if (currentScan != null) {
+            currentScan.cancel();
+            currentScan = null;
+        }
+        scanTimer.stop();
+    }
 
-        // Hvis vi allerede har et tre (samme rot), ta vare på nåværende valg før vi bygger nytt
-        if (sameRoot && masterTreeRoot != null) {
-            List<Path> selectedNow = new ArrayList<>();
-            collectSelected(masterTreeRoot, selectedNow);
-            persistentSelections.clear();
-            persistentSelections.addAll(selectedNow);
+    /**
+     * Kalles én gang per frame: legger så mange skannede mapper inn i treet som vi rekker innenfor frame-budsjettet.
+     */
+    private void drainScan(long now) {
+        ScanSession session = currentScan;
+        if (session == null) {
+            scanTimer.stop();
+            return;
         }
 
-        Task<CheckBoxTreeItem<FileNode>> loadTask = new Task<>() {
-            @Override
-            protected CheckBoxTreeItem<FileNode> call() {
-                updateMessage("Laster filstruktur...");
-                return createTreeItem(rootPath);
+        long deadline = System.nanoTime() + SCAN_FRAME_BUDGET_NANOS;
+        suppressSummaryUpdates = true;
+        try {
+            ScanSession.Batch batch;
+            while (System.nanoTime() < deadline && (batch = session.poll()) != null) {
+                applyScanBatch(session, batch);
             }
-        };
+        } finally {
+            suppressSummaryUpdates = false;
+        }
 
-        loadTask.setOnSucceeded(e -> {
-            view.getStatusLabel().textProperty().unbind();
+        if (session.isComplete()) {
+            finishScan(session);
+        } else if (now - lastScanStatusNanos >= SCAN_STATUS_INTERVAL_NANOS && session.getDirectoriesFound() > 0) {
+            lastScanStatusNanos = now;
+            double seconds = Math.max(session.getElapsedSeconds(), 0.001);
+            view.getStatusLabel().setText(String.format("Skanner... %,d filer i %,d mapper (%,.0f filer/s, %,.0f mapper/s)",
+                    session.getFilesFound(), session.getDirectoriesFound(),
+                    session.getFilesFound() / seconds, session.getDirectoriesFound() / seconds));
+        }
+    }
 
-            this.masterTreeRoot = loadTask.getValue();
+    /**
+     * Legger innholdet i én mappe inn i treet, og gjenoppretter valg og outline-merking for filene.
+     */
+    private void applyScanBatch(ScanSession session, ScanSession.Batch batch) {
+        CheckBoxTreeItem<FileNode> parent = session.getDirectoryItem(batch.rootIndex, batch.directory);
+        if (parent == null) return;
+
+        List<CheckBoxTreeItem<FileNode>> items = new ArrayList<>(batch.children.size());
+        List<CheckBoxTreeItem<FileNode>> files = new ArrayList<>();
+        for (ProjectScanner.Entry entry : batch.children) {
+            Path path = entry.getPath();
+            CheckBoxTreeItem<FileNode> item = new CheckBoxTreeItem<>(new FileNode(path));
+            item.setExpanded(true);
+            if (entry.isDirectory()) {
+                session.registerDirectory(batch.rootIndex, path, item);
+            } else {
+                item.getValue().setOutline(outlinedPaths.contains(path));
+                item.selectedProperty().addListener((obs, oldVal, newVal) -> onFileSelectionChanged(path, newVal));
+                files.add(item);
+            }
+            items.add(item);
+        }
+        parent.getChildren().addAll(items);
 
-            // Gjenopprett tidligere valg (hvis noen) før vi justerer visning
-            if (!persistentSelections.isEmpty()) {
-                restoreSelections(masterTreeRoot);
+        // Velges etter at de er lagt inn, slik at mappenes avkrysning oppdateres
+        for (CheckBoxTreeItem<FileNode> file : files) {
+            if (persistentSelections.contains(file.getValue().getPath())) {
+                file.setSelected(true);
+            }
+        }
+        if (flatTreeRoot != null) {
+            for (CheckBoxTreeItem<FileNode> file : files) {
+                flatTreeRoot.getChildren().add(flatCopyOf(file));
             }
+        }
+    }
 
-            updateTreeViewVisibility();
-            addSelectionListenerToAll(view.getFileTreeView().getRoot());
+    private void finishScan(ScanSession session) {
+        scanTimer.stop();
+        currentScan = null;
 
-            selectedPathLabel.setText("Valgt mappe: " + rootPath);
-            view.getStatusLabel().setText("Klar. Velg filer for veving.");
-            updateSummary();
-        });
+        // Den flate visningen fikk filene i skannerekkefølge; bygg den på nytt i samme rekkefølge som treet
+        if (flatTreeRoot != null) {
+            updateTreeViewVisibility();
+        }
 
-        loadTask.setOnFailed(e -> {
-            view.getStatusLabel().textProperty().unbind();
+        Throwable error = session.getError();
+        if (error != null) {
             view.getStatusLabel().setText("Feil ved lasting av mappe.");
-            new Alert(Alert.AlertType.ERROR, "Kunne ikke lese mappen: " + loadTask.getException().getMessage()).show();
-        });
+            new Alert(Alert.AlertType.ERROR, "Kunne ikke lese mappen: " + error.getMessage()).show();
+        } else {
+            Workspace scanned = session.getWorkspace();
+            selectedPathLabel.setText((scanned.isMultiRoot() ? "Arbeidsområde: " : "Valgt mappe: ") + describeWorkspace(scanned));
+            view.getStatusLabel().setText(String.format("Klar. %,d filer i %,d mapper lastet på %.1f s. Velg filer for veving.",
+                    session.getFilesFound(), session.getDirectoriesFound(), session.getElapsedSeconds()));
+        }
+        updateSummary();
+    }
+
+    private void onFileSelectionChanged(Path path, boolean selected) {
+        if (selected) {
+            persistentSelections.add(path);
+        } else {
+            persistentSelections.remove(path);
+        }
+        if (!suppressSummaryUpdates) {
+            updateSummary();
+        }
+    }
 
-        view.getStatusLabel().textProperty().bind(loadTask.messageProperty());
-        new Thread(loadTask).start();
+    private String describeWorkspace(Workspace ws) {
+        if (ws.isMultiRoot()) {
+            return ws.getDisplayName();
+        }
+        return ws.getRoots().get(0).getPath().toString();
     }
 
     private void updateTreeViewVisibility() {
@@ -356,27 +491,21 @@ public class MainController {
         boolean hideFolders = view.getToggleFoldersButton().isSelected();
         if (hideFolders) {
             // Flat visning: kun filer, men checkboxene er synket med master-treet
-            CheckBoxTreeItem<FileNode> flatRoot = new CheckBoxTreeItem<>(masterTreeRoot.getValue());
-            collectFilesRecursively(masterTreeRoot, flatRoot);
-            view.getFileTreeView().setRoot(flatRoot);
+            flatTreeRoot = new CheckBoxTreeItem<>(masterTreeRoot.getValue());
+            collectFilesRecursively(masterTreeRoot, flatTreeRoot);
+            view.getFileTreeView().setRoot(flatTreeRoot);
         } else {
             // Normal hierarkisk visning
+            flatTreeRoot = null;
             view.getFileTreeView().setRoot(masterTreeRoot);
         }
-        // Legg til lyttere på nytt hver gang visningen endres
-        addSelectionListenerToAll(view.getFileTreeView().getRoot());
+        // Lytterne sitter på filene i master-treet; kopiene i flat visning er bundet til dem
     }
 
     private void collectFilesRecursively(CheckBoxTreeItem<FileNode> source, CheckBoxTreeItem<FileNode> target) {
         for (TreeItem<FileNode> child : source.getChildren()) {
             if (Files.isRegularFile(child.getValue().getPath())) {
-                // Lag en kopi for å unngå problemer med at en node har flere foreldre
-                CheckBoxTreeItem<FileNode> copy = new CheckBoxTreeItem<>(child.getValue());
-
-                // Koble checkboxene sammen slik at de alltid er synkronisert
-                copy.selectedProperty().bindBidirectional(((CheckBoxTreeItem<FileNode>) child).selectedProperty());
-
-                target.getChildren().add(copy);
+                target.getChildren().add(flatCopyOf((CheckBoxTreeItem<FileNode>) child));
             } else if (Files.isDirectory(child.getValue().getPath())) {
                 // Fortsett letingen ned i undermapper
                 collectFilesRecursively((CheckBoxTreeItem<FileNode>) child, target);
@@ -384,44 +513,24 @@ public class MainController {
         }
     }
 
-    private CheckBoxTreeItem<FileNode> createTreeItem(Path path) {
-        CheckBoxTreeItem<FileNode> item = new CheckBoxTreeItem<>(new FileNode(path));
-        item.setExpanded(true);
-
-        if (Files.isDirectory(path)) {
-            try (Stream<Path> stream = Files.list(path)) {
-                stream
-                        .filter(p -> !shouldSkipPath(p))
-                        .sorted()
-                        .map(this::createTreeItem)
-                        .forEach(item.getChildren()::add);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        return item;
-    }
+    private CheckBoxTreeItem<FileNode> flatCopyOf(CheckBoxTreeItem<FileNode> item) {
+        // Lag en kopi for å unngå problemer med at en node har flere foreldre
+        CheckBoxTreeItem<FileNode> copy = new CheckBoxTreeItem<>(item.getValue());
 
-    /**
-     * Gjenoppretter valgte filer basert på persistentSelections.
-     */
-    private void restoreSelections(TreeItem<FileNode> item) {
-        if (item instanceof CheckBoxTreeItem) {
-            Path path = item.getValue().getPath();
-            if (Files.isRegularFile(path) && persistentSelections.contains(path)) {
-                ((CheckBoxTreeItem<FileNode>) item).setSelected(true);
-            }
-        }
-        for (TreeItem<FileNode> child : item.getChildren()) {
-            restoreSelections(child);
-        }
+        // Koble checkboxene sammen slik at de alltid er synkronisert
+        copy.selectedProperty().bindBidirectional(item.selectedProperty());
+        return copy;
     }
 
     private void generateFile() {
-        if (currentRootPath == null) {
+        if (workspace.isEmpty()) {
             new Alert(Alert.AlertType.WARNING, "Du må velge en mappe først!").show();
             return;
         }
+        if (currentScan != null) {
+            new Alert(Alert.AlertType.WARNING, "Vent til filstrukturen er ferdig lastet.").show();
+            return;
+        }
 
         List<Path> selectedPaths = new ArrayList<>();
         // Bruk alltid master-treet for å samle inn filer, siden det alltid er komplett.
@@ -432,43 +541,38 @@ public class MainController {
             return;
         }
 
+        WeaveOptions options = new WeaveOptions();
+        int formatIndex = view.getOutputFormatComboBox().getSelectionModel().getSelectedIndex();
+        options.setFormat(formatIndex >= 0 ? OutputFormats.all().get(formatIndex) : OutputFormats.defaultFormat());
+        options.setIncludeIndex(view.getIncludeIndexCheckBox().isSelected());
+        options.setOutlineAll(view.getOutlineAllCheckBox().isSelected());
+        options.setOutlinedFiles(outlinedPaths);
+        options.setDeduplicate(view.getDeduplicateCheckBox().isSelected());
+        OutputFormat format = options.getFormat();
+
         FileChooser chooser = new FileChooser();
         chooser.setTitle("Lagre Vevd Kontekst");
-        chooser.setInitialFileName("woven_context.txt");
-        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
+        if (lastOutputFile != null && lastOutputFile.getParentFile() != null && lastOutputFile.getParentFile().isDirectory()) {
+            chooser.setInitialDirectory(lastOutputFile.getParentFile());
+        }
+        // Foreslå forrige fil hvis den har riktig endelse for valgt format
+        if (lastOutputFile != null && lastOutputFile.getName().endsWith(format.getFileExtension())) {
+            chooser.setInitialFileName(lastOutputFile.getName());
+        } else {
+            chooser.setInitialFileName("woven_context" + format.getFileExtension());
+        }
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(format.getDisplayName(), "*" + format.getFileExtension()));
         File outputFile = chooser.showSaveDialog(stage);
 
         if (outputFile == null) return;
+        lastOutputFile = outputFile;
+        Workspace snapshot = new Workspace(workspace);
 
-        Task<Void> generateTask = new Task<>() {
+        Task<WeaveResult> generateTask = new Task<>() {
             @Override
-            protected Void call() throws Exception {
+            protected WeaveResult call() throws Exception {
                 updateMessage("Vever kontekst...");
-                StringBuilder sb = new StringBuilder(
-                        "/*\n--- Context woven by ContextWeaver ---\n\n" +
-                                "Project: " + currentRootPath.getFileName() + "\n" +
-                                "Files included: " + selectedPaths.size() + "\n" +
-                                "*/\n\n\n"
-                );
-
-                long total = selectedPaths.size();
-                long current = 0;
-
-                for (Path path : selectedPaths) {
-                    if (isCancelled()) break;
-                    updateProgress(++current, total);
-                    String relativePath = currentRootPath.relativize(path).toString().replace('\\', '/');
-                    sb.append("--- START OF FILE: ").append(relativePath).append(" ---\n\n");
-                    try {
-                        sb.append(Files.readString(path));
-                    } catch (IOException e) {
-                        sb.append("!!! ERROR READING FILE: ").append(e.getMessage()).append(" !!!");
-                    }
-                    sb.append("\n\n--- END OF FILE: ").append(relativePath).append(" ---\n\n\n");
-                }
-
-                Files.writeString(outputFile.toPath(), sb.toString());
-                return null;
+                return weaver.weave(snapshot, selectedPaths, outputFile.toPath(), options, this::updateProgress, this::isCancelled);
             }
         };
 
@@ -476,7 +580,11 @@ public class MainController {
             view.getStatusLabel().textProperty().unbind();
             view.getProgressBar().progressProperty().unbind();
 
-            view.getStatusLabel().setText("Kontekst vevd og lagret!");
+            WeaveResult result = generateTask.getValue();
+            view.getStatusLabel().setText(String.format("Kontekst vevd og lagret! %d filer lest på nytt, %d gjenbrukt fra cache%s%s.",
+                    result.getRenderedSegments(), result.getReusedSegments(),
+                    result.getDuplicateSegments() > 0 ? ", " + result.getDuplicateSegments() + " duplikater som referanse" : "",
+                    result.isPatchedInPlace() ? " (oppdatert på plass)" : ""));
             view.getProgressBar().setVisible(false);
             new Alert(Alert.AlertType.INFORMATION, "Filen ble lagret!\n" + outputFile.getAbsolutePath()).show();
         });
@@ -511,14 +619,26 @@ public class MainController {
     private void selectPreset(List<String> extensions) {
         if (masterTreeRoot == null) return;
         // Bruk alltid master-treet for å sette valg
-        setSelection(this.masterTreeRoot, true, extensions);
+        suppressSummaryUpdates = true;
+        try {
+            setSelection(this.masterTreeRoot, true, extensions);
+        } finally {
+            suppressSummaryUpdates = false;
+        }
         updateSummary();
     }
 
     private void deselectAll() {
         if (masterTreeRoot == null) return;
         // Bruk alltid master-treet for å fjerne valg
-        setSelection(this.masterTreeRoot, false, null);
+        suppressSummaryUpdates = true;
+        try {
+            setSelection(this.masterTreeRoot, false, null);
+        } finally {
+            suppressSummaryUpdates = false;
+        }
+        // Også filer som ikke vises i treet nå (skjult av filteret eller ikke skannet ennå)
+        persistentSelections.clear();
         updateSummary();
     }
 
@@ -531,10 +651,7 @@ public class MainController {
         if (Files.isRegularFile(path)) {
             boolean shouldSelect = selected;
             if (selected && extensions != null) {
-                String fileName = path.getFileName().toString();
-                String lowerName = fileName.toLowerCase(Locale.ROOT);
-                shouldSelect = extensions.stream()
-                        .anyMatch(ext -> lowerName.endsWith(ext.toLowerCase(Locale.ROOT)));
+                shouldSelect = SelectionPresets.matches(path, extensions);
             }
             cbItem.setSelected(shouldSelect);
         } else {
@@ -547,7 +664,49 @@ public class MainController {
         }
     }
 
+    /**
+     * Veksler outline for valgt node i treet. For en mappe gjelder det alle støttede filer under den:
+     * er noen av dem ikke merket, merkes alle; ellers fjernes merkingen.
+     */
+    private void toggleOutlineForSelectedItem() {
+        TreeItem<FileNode> selected = view.getFileTreeView().getSelectionModel().getSelectedItem();
+        if (selected == null) return;
+
+        List<TreeItem<FileNode>> files = new ArrayList<>();
+        collectOutlineCandidates(selected, files);
+        if (files.isEmpty()) {
+            view.getStatusLabel().setText("Outline støttes for Java, Kotlin, TypeScript/JavaScript og Python.");
+            return;
+        }
+
+        boolean enable = files.stream().anyMatch(item -> !item.getValue().isOutline());
+        for (TreeItem<FileNode> item : files) {
+            item.getValue().setOutline(enable);
+            if (enable) {
+                outlinedPaths.add(item.getValue().getPath());
+            } else {
+                outlinedPaths.remove(item.getValue().getPath());
+            }
+        }
+        view.getFileTreeView().refresh();
+        updateSummary();
+    }
+
+    private void collectOutlineCandidates(TreeItem<FileNode> item, List<TreeItem<FileNode>> result) {
+        Path path = item.getValue().getPath();
+        if (Files.isRegularFile(path)) {
+            if (SourceOutliner.supports(path)) {
+                result.add(item);
+            }
+            return;
+        }
+        for (TreeItem<FileNode> child : item.getChildren()) {
+            collectOutlineCandidates(child, result);
+        }
+    }
+
     private void updateSummary() {
+        long generation = summaryGeneration.incrementAndGet();
         if (masterTreeRoot == null) {
             Platform.runLater(() -> view.getSummaryLabel().setText("0 filer valgt\n0 KB"));
             return;
@@ -557,20 +716,45 @@ public class MainController {
         // Bruk alltid master-treet for oppsummering
         collectSelected(this.masterTreeRoot, selectedPaths);
 
+        // Øyeblikksbilde av outline-valg, siden utregningen skjer på en annen tråd
+        boolean outlineAll = view.getOutlineAllCheckBox().isSelected();
+        Set<Path> outlined = new HashSet<>(outlinedPaths);
+        Predicate<Path> shouldOutline = path -> (outlineAll || outlined.contains(path)) && SourceOutliner.supports(path);
+        boolean deduplicate = view.getDeduplicateCheckBox().isSelected();
+        int rootCount = workspace.isMultiRoot() ? workspace.getRoots().size() : 0;
 
-        persistentSelections.clear();
-        persistentSelections.addAll(selectedPaths);
+        summaryExecutor.submit(() -> {
+            // En nyere forespørsel er allerede i kø – ikke bruk tid på denne
+            if (generation != summaryGeneration.get()) return;
 
-        AtomicLong totalSize = new AtomicLong(0);
-        selectedPaths.forEach(p -> {
+            SelectionSummary summary;
             try {
-                totalSize.addAndGet(Files.size(p));
-            } catch (IOException e) {
-                // Ignorer feil her
+                summary = summaryCalculator.calculate(selectedPaths, shouldOutline, deduplicate,
+                        () -> generation != summaryGeneration.get());
+            } catch (CancellationException e) {
+                return;
+            }
+            StringBuilder summaryText = new StringBuilder(String.format("%d filer valgt\n%.2f KB",
+                    summary.getFileCount(), summary.getTotalBytes() / 1024.0));
+            if (summary.getDuplicateFiles() > 0) {
+                summaryText.append(String.format("\n%d duplikater, sparer %.2f KB",
+                        summary.getDuplicateFiles(), summary.getDuplicateBytes() / 1024.0));
+            }
+            if (summary.getOutlinedFiles() > 0) {
+                summaryText.append(String.format("\n≈ %.2f KB med outline (%d filer)",
+                        summary.getEstimatedBytes() / 1024.0, summary.getOutlinedFiles()));
+            } else if (summary.getDuplicateFiles() > 0) {
+                summaryText.append(String.format("\n≈ %.2f KB i output", summary.getEstimatedBytes() / 1024.0));
+            }
+            if (rootCount > 0) {
+                summaryText.append(String.format("\n%d rotmapper i arbeidsområdet", rootCount));
             }
-        });
 
-        String summaryText = String.format("%d filer valgt\n%.2f KB", selectedPaths.size(), totalSize.get() / 1024.0);
-        Platform.runLater(() -> view.getSummaryLabel().setText(summaryText));
+            Platform.runLater(() -> {
+                if (generation == summaryGeneration.get()) {
+                    view.getSummaryLabel().setText(summaryText.toString());
+                }
+            });
+        });
     }
 }
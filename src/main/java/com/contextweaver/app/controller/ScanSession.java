@@ -0,0 +1,132 @@
+package com.contextweaver.app.controller;
+
+import com.contextweaver.app.model.FileNode;
+import com.contextweaver.app.model.Workspace;
+import com.contextweaver.app.service.ProjectScanner;
+import javafx.scene.control.CheckBoxTreeItem;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Én lasting av arbeidsområdet. Skannetrådene legger hver ferdigleste mappe i en kø,
+ * og FX-tråden tømmer køen én gang per frame, slik at treet fylles gradvis uten ett
+ * Platform.runLater-kall per mappe. Avbrytes når en ny lasting starter.
+ */
+class ScanSession {
+
+    /** Innholdet i én mappe, klart til å legges inn i treet. */
+    static final class Batch {
+        final int rootIndex;
+        final Path directory;
+        final List<ProjectScanner.Entry> children;
+
+        private Batch(int rootIndex, Path directory, List<ProjectScanner.Entry> children) {
+            this.rootIndex = rootIndex;
+            this.directory = directory;
+            this.children = children;
+        }
+    }
+
+    private final Workspace workspace;
+    private final ConcurrentLinkedQueue<Batch> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong filesFound = new AtomicLong();
+    private final AtomicLong directoriesFound = new AtomicLong();
+    private final AtomicInteger runningRoots;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean cancelled;
+
+    // Brukes kun fra FX-tråden
+    private final List<Map<Path, CheckBoxTreeItem<FileNode>>> directoryItems = new ArrayList<>();
+    private final List<Future<?>> scans = new ArrayList<>();
+
+    ScanSession(Workspace workspace) {
+        this.workspace = workspace;
+        this.runningRoots = new AtomicInteger(workspace.getRoots().size());
+        // Ett oppslag per rot, slik at nøstede røtter ikke deler tre-noder
+        workspace.getRoots().forEach(root -> directoryItems.add(new HashMap<>()));
+    }
+
+    Workspace getWorkspace() {
+        return workspace;
+    }
+
+    // --- Kalles fra skannetrådene ---
+
+    void publish(int rootIndex, Path directory, List<ProjectScanner.Entry> children) {
+        if (cancelled) return;
+        long files = 0;
+        for (ProjectScanner.Entry child : children) {
+            if (!child.isDirectory()) files++;
+        }
+        filesFound.addAndGet(files);
+        directoriesFound.incrementAndGet();
+        pending.add(new Batch(rootIndex, directory, children));
+    }
+
+    void fail(Throwable throwable) {
+        error.compareAndSet(null, throwable);
+    }
+
+    void rootFinished() {
+        runningRoots.decrementAndGet();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    // --- Kalles fra FX-tråden ---
+
+    void addScan(Future<?> scan) {
+        scans.add(scan);
+    }
+
+    void cancel() {
+        cancelled = true;
+        scans.forEach(scan -> scan.cancel(true));
+        pending.clear();
+    }
+
+    Batch poll() {
+        return pending.poll();
+    }
+
+    /** Alle røtter er ferdig skannet og alt er lagt inn i treet. */
+    boolean isComplete() {
+        return runningRoots.get() == 0 && pending.isEmpty();
+    }
+
+    void registerDirectory(int rootIndex, Path directory, CheckBoxTreeItem<FileNode> item) {
+        directoryItems.get(rootIndex).put(directory, item);
+    }
+
+    CheckBoxTreeItem<FileNode> getDirectoryItem(int rootIndex, Path directory) {
+        return directoryItems.get(rootIndex).get(directory);
+    }
+
+    Throwable getError() {
+        return error.get();
+    }
+
+    long getFilesFound() {
+        return filesFound.get();
+    }
+
+    long getDirectoriesFound() {
+        return directoriesFound.get();
+    }
+
+    double getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1_000_000_000.0;
+    }
+}
@@ -0,0 +1,685 @@
+package com.contextweaver.app.daemon;
+
+import com.contextweaver.app.model.FilterMode;
+import com.contextweaver.app.model.Workspace;
+import com.contextweaver.app.model.WorkspaceRoot;
+import com.contextweaver.app.service.DuplicateFinder;
+import com.contextweaver.app.service.GitChangeScanner;
+import com.contextweaver.app.service.PathFilter;
+import com.contextweaver.app.service.SelectionPresets;
+import com.contextweaver.app.service.WeaveOptions;
+import com.contextweaver.app.service.WeaveResult;
+import com.contextweaver.app.service.Weaver;
+import com.contextweaver.app.service.format.OutputFormat;
+import com.contextweaver.app.service.format.OutputFormats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * ContextWeaver som bakgrunnsprosess uten GUI, for editor-integrasjoner.
+ * Holder arbeidsområdet varmt (WarmIndex) og svarer på forespørsler over en lokal socket
+ * (loopback-TCP eller Unix domain socket), med samme skanning, filtrering og veving som GUI-et.
+ *
+ * Tilgang: over TCP må klienten først sende AUTH med tokenet daemonen skriver til en fil som bare eieren
+ * kan lese, ellers kunne alle lokale brukere lese eierens filer. Unix-socketen får rettigheter 0600 i stedet.
+ * Daemonen serverer bare filer GUI-et også ville vist (samme PathFilter), også når de bes om med path=.
+ *
+ * Protokoll: én kommando per linje, argumenter som key=value (skilt med mellomrom, eller tab).
+ *   AUTH token=...                            -> må sendes først over TCP
+ *   PING                                      -> "pong"
+ *   STATUS                                    -> røtter, antall filer og overvåkede mapper
+ *   OPEN root=... [root=...] [mode=smart|all|git] [base-ref=main]
+ *   REFRESH                                   -> skanner alle røtter på nytt
+ *   LIST [preset=code|all] [path=...] [glob=...]
+ *   WEAVE [preset=...] [path=...] [glob=...] [format=text|markdown|xml|jsonl] [index=true] [outline=true] [dedup=true]
+ *   QUIT
+ * Svar: "OK <antall bytes>\n" fulgt av innholdet, eller "ERR <melding>\n".
+ */
+public class ContextWeaverDaemon {
+
+    public static final int DEFAULT_PORT = 7878;
+
+    private static final String USAGE = String.join("\n",
+            "Bruk: ContextWeaverDaemon [--port N [--token-file sti] | --socket sti] [--mode smart|all|git] [--base-ref ref] [rotmappe ...]",
+            "  --port N        lytt på 127.0.0.1:N (standard " + DEFAULT_PORT + ")",
+            "  --token-file    hvor tokenet for AUTH skrives (standard ~/.contextweaver/daemon-<port>.token)",
+            "  --socket sti    lytt på en Unix domain socket (kun eieren) i stedet for TCP",
+            "  --mode          filtreringsmodus for røttene (standard smart)",
+            "  --base-ref      base for git-modus (standard " + GitChangeScanner.DEFAULT_BASE_REF + ")",
+            "  --verbose       skriv tid og statistikk for hver forespørsel");
+
+    private final WarmIndex index = new WarmIndex();
+    private final DuplicateFinder duplicateFinder = new DuplicateFinder();
+    private final Weaver weaver = new Weaver(duplicateFinder, false);
+    private final Path tempDirectory;
+    // Kreves av TCP-klienter; null når vi lytter på en Unix-socket som bare eieren har tilgang til
+    private volatile byte[] token;
+    // Én linje per forespørsel er støy i vanlig drift, men nyttig når man måler
+    private volatile boolean verbose;
+
+    private final ExecutorService clientExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "daemon-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ContextWeaverDaemon() throws IOException {
+        this.tempDirectory = Files.createTempDirectory("contextweaver-daemon");
+        tempDirectory.toFile().deleteOnExit();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        Path socketPath = null;
+        Path tokenFile = null;
+        FilterMode mode = FilterMode.SMART;
+        String baseRef = GitChangeScanner.DEFAULT_BASE_REF;
+        List<Path> roots = new ArrayList<>();
+        boolean verbose = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(requireValue(args, ++i));
+                    break;
+                case "--socket":
+                    socketPath = Paths.get(requireValue(args, ++i));
+                    break;
+                case "--token-file":
+                    tokenFile = Paths.get(requireValue(args, ++i));
+                    break;
+                case "--mode":
+                    mode = parseFilterMode(requireValue(args, ++i));
+                    break;
+                case "--base-ref":
+                    baseRef = requireValue(args, ++i);
+                    break;
+                case "--verbose":
+                    verbose = true;
+                    break;
+                case "--help":
+                case "-h":
+                    System.out.println(USAGE);
+                    return;
+                default:
+                    roots.add(Paths.get(args[i]));
+            }
+        }
+
+        ContextWeaverDaemon daemon = new ContextWeaverDaemon();
+        daemon.verbose = verbose;
+        if (!roots.isEmpty()) {
+            Workspace workspace = new Workspace();
+            for (Path root : roots) {
+                workspace.addRoot(root, mode);
+            }
+            long start = System.nanoTime();
+            daemon.index.open(workspace, baseRef);
+            System.out.printf("Indeksert %s: %,d filer på %d ms%n", workspace.getDisplayName(),
+                    daemon.countFiles(), (System.nanoTime() - start) / 1_000_000);
+        }
+        if (socketPath == null && tokenFile == null) {
+            tokenFile = Paths.get(System.getProperty("user.home"), ".contextweaver", "daemon-" + port + ".token");
+        }
+        daemon.serve(port, socketPath, tokenFile);
+    }
+
+    private static String requireValue(String[] args, int i) {
+        if (i >= args.length) {
+            System.err.println(USAGE);
+            throw new IllegalArgumentException("Mangler verdi for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    static FilterMode parseFilterMode(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "smart":
+                return FilterMode.SMART;
+            case "all":
+                return FilterMode.ALL_FILES;
+            case "git":
+                return FilterMode.GIT_CHANGED;
+            default:
+                throw new IllegalArgumentException("Ukjent modus: " + value + " (bruk smart, all eller git)");
+        }
+    }
+
+    /**
+     * Tar imot klienter til prosessen avsluttes. Hver klient får sin egen tråd og kan sende flere kommandoer.
+     * Over TCP skrives et nytt tilfeldig token til tokenFile (kun lesbar for eieren), og klientene må sende det med AUTH.
+     */
+    public void serve(int port, Path socketPath, Path tokenFile) throws IOException {
+        ServerSocketChannel server;
+        if (socketPath != null) {
+            server = bindOwnerOnlySocket(socketPath);
+            token = null;
+            System.out.println("ContextWeaver-daemon lytter på " + socketPath.toAbsolutePath());
+        } else {
+            token = writeToken(tokenFile);
+            // Kun loopback: daemonen skal aldri være tilgjengelig fra nettverket
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            System.out.println("ContextWeaver-daemon lytter på " + server.getLocalAddress()
+                    + " (token i " + tokenFile.toAbsolutePath() + ")");
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                index.close();
+                if (socketPath != null) {
+                    Files.deleteIfExists(socketPath);
+                }
+                if (tokenFile != null) {
+                    Files.deleteIfExists(tokenFile);
+                }
+            } catch (IOException e) {
+                // Avslutter uansett
+            }
+        }));
+
+        while (server.isOpen()) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                if (!server.isOpen()) break;
+                throw e;
+            }
+            if (socketPath == null) {
+                // Svarene er små og kommer i to deler (linje + innhold); uten dette venter Nagle på ACK mellom dem
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            clientExecutor.submit(() -> handleClient(client));
+        }
+    }
+
+    /** Et nytt token for hver oppstart, skrevet til en fil som bare eieren kan lese. */
+    private static byte[] writeToken(Path tokenFile) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        String value = HexFormat.of().formatHex(random);
+
+        Path parent = tokenFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Opprettes på nytt (ikke overskrevet), så filen aldri finnes med andre rettigheter enn 0600
+        Files.deleteIfExists(tokenFile);
+        try {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Ikke POSIX (Windows): filen arver rettighetene til brukerens hjemmemappe
+            Files.createFile(tokenFile);
+        }
+        Files.writeString(tokenFile, value + "\n", StandardCharsets.US_ASCII);
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Binder Unix-socketen uten at den noen gang er tilgjengelig for andre brukere: den bindes i en ny 0700-mappe,
+     * får 0600 og flyttes først da (atomisk rename) til socketPath. Å koble til krever skrivetilgang til socket-filen.
+     */
+    private static ServerSocketChannel bindOwnerOnlySocket(Path socketPath) throws IOException {
+        Path target = socketPath.toAbsolutePath().normalize();
+        removeStaleSocket(target);
+        Files.createDirectories(target.getParent());
+
+        Path privateDirectory;
+        try {
+            privateDirectory = Files.createTempDirectory(target.getParent(), ".cw",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // Ikke POSIX: rettighetene styres av mappen socketen ligger i
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(target));
+            return server;
+        }
+        Path staging = privateDirectory.resolve("s");
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(staging));
+            Files.setPosixFilePermissions(staging, PosixFilePermissions.fromString("rw-------"));
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        } finally {
+            Files.deleteIfExists(staging);
+            Files.deleteIfExists(privateDirectory);
+        }
+        return server;
+    }
+
+    /**
+     * En socket-fil fra en tidligere kjøring blokkerer bind og fjernes. Alt annet på stien (en vanlig fil, en mappe,
+     * en symlenke eller en socket en annen daemon fortsatt lytter på) får stå, og oppstarten avbrytes.
+     */
+    private static void removeStaleSocket(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) return;
+        if (!isSocket(path)) {
+            throw new IOException(path + " finnes og er ikke en socket; velg en annen sti med --socket");
+        }
+        try (SocketChannel probe = SocketChannel.open(UnixDomainSocketAddress.of(path))) {
+            throw new IOException("En annen prosess lytter allerede på " + path);
+        } catch (ConnectException e) {
+            // Ingen lytter: socket-filen er foreldet
+        }
+        Files.delete(path);
+    }
+
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 0170000) == 0140000;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+        }
+    }
+
+    private boolean isValidToken(String value) {
+        byte[] expected = token;
+        // Konstant tid, så tokenet ikke kan gjettes tegn for tegn
+        return expected == null || (value != null
+                && MessageDigest.isEqual(expected, value.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private void handleClient(SocketChannel client) {
+        // Kommandoene leses i en egen tråd, slik at vi merker at klienten kobler fra (EOF eller lesefeil)
+        // også mens en WEAVE pågår, og kan avbryte den i stedet for å veve ferdig til ingen
+        BlockingQueue<Optional<String>> lines = new LinkedBlockingQueue<>();
+        AtomicBoolean disconnected = new AtomicBoolean();
+        clientExecutor.submit(() -> readLines(client, lines, disconnected));
+        try (client) {
+            boolean authenticated = token == null;
+            Optional<String> next;
+            while ((next = lines.take()).isPresent()) {
+                String line = next.get();
+                if (line.isBlank()) continue;
+                DaemonRequest request;
+                try {
+                    request = DaemonRequest.parse(line);
+                } catch (IllegalArgumentException e) {
+                    sendError(client, e.getMessage());
+                    continue;
+                }
+                if (request.getCommand().equals("QUIT")) {
+                    sendText(client, "bye\n");
+                    return;
+                }
+                if (request.getCommand().equals("AUTH")) {
+                    if (!isValidToken(request.get("token", null))) {
+                        // Ingen nye forsøk på samme forbindelse
+                        sendError(client, "Ugyldig token");
+                        return;
+                    }
+                    authenticated = true;
+                    sendText(client, "ok\n");
+                    continue;
+                }
+                if (!authenticated) {
+                    sendError(client, "Ikke autentisert: send AUTH token=<innholdet i tokenfilen> først");
+                    continue;
+                }
+                handleRequest(client, request, disconnected::get);
+            }
+        } catch (IOException e) {
+            // Klienten koblet fra
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Legger hver linje i køen, og en tom Optional til slutt når klienten har lukket (eller forbindelsen er brutt). */
+    private static void readLines(SocketChannel client, BlockingQueue<Optional<String>> lines, AtomicBoolean disconnected) {
+        // Lukkes ikke her: det ville lukket socketen før svarene på kommandoene i køen er sendt
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(Optional.of(line));
+            }
+        } catch (IOException e) {
+            // Brutt forbindelse, eller lukket fra vår side etter QUIT
+        } finally {
+            disconnected.set(true);
+            lines.add(Optional.empty());
+        }
+    }
+
+    private void handleRequest(SocketChannel client, DaemonRequest request, BooleanSupplier disconnected) throws IOException {
+        long start = System.nanoTime();
+        try {
+            switch (request.getCommand()) {
+                case "PING":
+                    sendText(client, "pong\n");
+                    break;
+                case "STATUS":
+                    sendText(client, status());
+                    break;
+                case "OPEN":
+                    open(request);
+                    sendText(client, status());
+                    break;
+                case "REFRESH":
+                    requireWorkspace();
+                    index.refresh();
+                    sendText(client, status());
+                    break;
+                case "LIST":
+                    sendText(client, list(request));
+                    break;
+                case "WEAVE":
+                    weave(client, request, disconnected);
+                    break;
+                default:
+                    sendError(client, "Ukjent kommando: " + request.getCommand());
+                    return;
+            }
+            if (verbose) {
+                System.out.printf("%s: %d ms%n", request.getCommand(), (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (CancellationException e) {
+            // Klienten koblet fra midt i; det er ingen å svare
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            sendError(client, e.getMessage());
+        } catch (IOException e) {
+            if (!client.isOpen()) throw e;
+            sendError(client, "I/O-feil: " + e.getMessage());
+        }
+    }
+
+    // --- Kommandoer ---
+
+    private void open(DaemonRequest request) throws IOException {
+        List<String> roots = request.getAll("root");
+        if (roots.isEmpty()) {
+            throw new IllegalArgumentException("OPEN trenger minst én root=<mappe>");
+        }
+        FilterMode mode = parseFilterMode(request.get("mode", "smart"));
+        Workspace workspace = new Workspace();
+        for (String root : roots) {
+            Path path = Paths.get(root);
+            if (!Files.isDirectory(path)) {
+                throw new IllegalArgumentException("Ikke en mappe: " + root);
+            }
+            workspace.addRoot(path, mode);
+        }
+        index.open(workspace, request.get("base-ref", GitChangeScanner.DEFAULT_BASE_REF));
+    }
+
+    private String status() {
+        Workspace workspace = index.getWorkspace();
+        StringBuilder sb = new StringBuilder();
+        sb.append("roots: ").append(workspace.getRoots().size()).append('\n');
+        for (WarmIndex.RootIndex root : index.getRoots()) {
+            WorkspaceRoot workspaceRoot = root.getRoot();
+            sb.append("root: ").append(workspaceRoot.getLabel())
+                    .append('\t').append(workspaceRoot.getPath())
+                    .append('\t').append(workspaceRoot.getFilterMode().getShortName())
+                    .append('\t').append(root.getFiles().size()).append(" filer\n");
+        }
+        sb.append("watched-directories: ").append(index.getWatchedDirectoryCount()).append('\n');
+        if (index.getUnwatchedDirectoryCount() > 0) {
+            sb.append("unwatched-directories: ").append(index.getUnwatchedDirectoryCount()).append('\n');
+        }
+        sb.append("generation: ").append(index.getGeneration()).append('\n');
+        return sb.toString();
+    }
+
+    private String list(DaemonRequest request) {
+        requireWorkspace();
+        Workspace workspace = index.getWorkspace();
+        boolean hasSelection = !request.getAll("preset").isEmpty()
+                || !request.getAll("path").isEmpty()
+                || !request.getAll("glob").isEmpty();
+        List<Path> files = hasSelection ? select(request) : allFiles();
+
+        StringBuilder sb = new StringBuilder();
+        for (Path file : files) {
+            sb.append(workspace.relativePathOf(file)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void weave(SocketChannel client, DaemonRequest request, BooleanSupplier disconnected) throws IOException {
+        requireWorkspace();
+        Workspace workspace = index.getWorkspace();
+        List<Path> files = select(request);
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("Ingen filer matchet forespørselen");
+        }
+
+        WeaveOptions options = new WeaveOptions();
+        String formatId = request.get("format", OutputFormats.defaultFormat().getId());
+        OutputFormat format = OutputFormats.byId(formatId);
+        if (format == null) {
+            throw new IllegalArgumentException("Ukjent format: " + formatId);
+        }
+        options.setFormat(format);
+        options.setIncludeIndex(request.getFlag("index"));
+        options.setOutlineAll(request.getFlag("outline"));
+        options.setDeduplicate(request.getFlag("dedup"));
+
+        // Weaver skriver til fil; den sendes rett fra filen til socketen (transferTo) og slettes etterpå
+        Path output = Files.createTempFile(tempDirectory, "weave-", format.getFileExtension());
+        try {
+            WeaveResult result = weaver.weave(workspace, files, output, options, (done, total) -> { }, disconnected);
+            sendFile(client, output);
+            if (verbose) {
+                System.out.printf("WEAVE: %d filer, %d gjenbrukt fra cache, %d duplikater%n",
+                        result.getFileCount(), result.getReusedSegments(), result.getDuplicateSegments());
+            }
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**
+     * Filene som matcher minst én av preset=, path= eller glob=, i samme rekkefølge som i filtreet.
+     * Eksplisitte filer (path=) tas med selv om de ikke er i indeksen (f.eks. uendrede filer i git-modus),
+     * men bare hvis filteret ville vist dem i GUI-et: .env, lockfiles, binærfiler osv. serveres aldri.
+     */
+    private List<Path> select(DaemonRequest request) {
+        Workspace workspace = index.getWorkspace();
+        List<List<String>> presets = new ArrayList<>();
+        boolean allFiles = false;
+        for (String name : request.getAll("preset")) {
+            List<String> extensions = SelectionPresets.byName(name);
+            if (extensions == null) {
+                allFiles = true;
+            } else {
+                presets.add(extensions);
+            }
+        }
+        List<PathMatcher> globs = new ArrayList<>();
+        List<Boolean> globMatchesName = new ArrayList<>();
+        for (String glob : request.getAll("glob")) {
+            globs.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+            // Uten / i mønsteret matches kun filnavnet, så "*.java" treffer filer i alle mapper
+            globMatchesName.add(glob.indexOf('/') < 0);
+        }
+        List<Path> targets = new ArrayList<>();
+        for (String value : request.getAll("path")) {
+            targets.add(resolveRequestPath(workspace, value));
+        }
+        if (!allFiles && presets.isEmpty() && globs.isEmpty() && targets.isEmpty()) {
+            throw new IllegalArgumentException("Ingen filer valgt: bruk preset=, path= eller glob=");
+        }
+
+        List<Path> result = new ArrayList<>();
+        for (WarmIndex.RootIndex root : index.getRoots()) {
+            TreeSet<Path> selected = new TreeSet<>();
+            for (Path file : root.getFiles()) {
+                if (allFiles || matchesAny(workspace, file, presets, globs, globMatchesName, targets)) {
+                    selected.add(file);
+                }
+            }
+            for (Path target : targets) {
+                if (workspace.findRoot(target) == root.getRoot() && isVisible(root.getRoot(), target)) {
+                    selected.add(target);
+                }
+            }
+            result.addAll(selected);
+        }
+        return result;
+    }
+
+    private static boolean matchesAny(Workspace workspace, Path file, List<List<String>> presets,
+                                      List<PathMatcher> globs, List<Boolean> globMatchesName, List<Path> targets) {
+        for (List<String> extensions : presets) {
+            if (SelectionPresets.matches(file, extensions)) return true;
+        }
+        if (!globs.isEmpty()) {
+            Path relative = Paths.get(workspace.relativePathOf(file));
+            for (int i = 0; i < globs.size(); i++) {
+                if (globs.get(i).matches(globMatchesName.get(i) ? file.getFileName() : relative)) return true;
+            }
+        }
+        for (Path target : targets) {
+            if (file.startsWith(target)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Om en fil ville vært med i filtreet: filen og alle mappene mellom roten og den må slippe gjennom PathFilter.
+     * I git-modus finnes ingen mappefilter (git har allerede brukt .gitignore), så mappene sjekkes som i Smart-modus;
+     * ellers ville f.eks. .git/config sluppet gjennom.
+     */
+    private static boolean isVisible(WorkspaceRoot root, Path file) {
+        if (!Files.isRegularFile(file)) return false;
+        FilterMode mode = root.getFilterMode();
+        if (PathFilter.shouldSkip(file, true, mode)) return false;
+
+        FilterMode directoryMode = mode == FilterMode.GIT_CHANGED ? FilterMode.SMART : mode;
+        for (Path dir = file.getParent(); dir != null && !dir.equals(root.getPath()); dir = dir.getParent()) {
+            if (PathFilter.shouldSkip(dir, false, directoryMode)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tolker en sti fra klienten: absolutt, eller relativ slik den vises i output
+     * (med rotens navn først når arbeidsområdet har flere røtter).
+     */
+    private static Path resolveRequestPath(Workspace workspace, String value) {
+        Path path = Paths.get(value);
+        Path resolved = null;
+        if (path.isAbsolute()) {
+            resolved = path.normalize();
+        } else if (workspace.isMultiRoot()) {
+            String label = path.getName(0).toString();
+            for (WorkspaceRoot root : workspace.getRoots()) {
+                if (root.getLabel().equals(label)) {
+                    resolved = path.getNameCount() > 1
+                            ? root.getPath().resolve(path.subpath(1, path.getNameCount())).normalize()
+                            : root.getPath();
+                }
+            }
+        } else {
+            resolved = workspace.getRoots().get(0).getPath().resolve(path).normalize();
+        }
+        if (resolved == null || workspace.findRoot(resolved) == null) {
+            throw new IllegalArgumentException("Utenfor arbeidsområdet: " + value);
+        }
+        return resolved;
+    }
+
+    private List<Path> allFiles() {
+        List<Path> files = new ArrayList<>();
+        index.getRoots().forEach(root -> files.addAll(root.getFiles()));
+        return files;
+    }
+
+    private long countFiles() {
+        long count = 0;
+        for (WarmIndex.RootIndex root : index.getRoots()) {
+            count += root.getFiles().size();
+        }
+        return count;
+    }
+
+    private void requireWorkspace() {
+        if (index.getWorkspace().isEmpty()) {
+            throw new IllegalStateException("Ingen rotmapper åpnet (bruk OPEN root=<mappe>)");
+        }
+    }
+
+    // --- Svar ---
+
+    private static void sendText(SocketChannel client, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer[] buffers = {
+                ByteBuffer.wrap(("OK " + bytes.length + "\n").getBytes(StandardCharsets.US_ASCII)),
+                ByteBuffer.wrap(bytes)
+        };
+        while (buffers[0].hasRemaining() || buffers[1].hasRemaining()) {
+            client.write(buffers);
+        }
+    }
+
+    private static void sendFile(SocketChannel client, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            writeFully(client, ByteBuffer.wrap(("OK " + size + "\n").getBytes(StandardCharsets.US_ASCII)));
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, client);
+            }
+        }
+    }
+
+    private static void sendError(SocketChannel client, String message) throws IOException {
+        // Meldingen må holde seg på én linje
+        String line = "ERR " + String.valueOf(message).replace('\n', ' ') + "\n";
+        writeFully(client, ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void writeFully(SocketChannel client, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+}
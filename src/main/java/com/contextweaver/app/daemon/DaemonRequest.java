@@ -0,0 +1,60 @@
+package com.contextweaver.app.daemon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Én forespørsel i daemonens linjeprotokoll: en kommando fulgt av key=value-argumenter.
+ * Argumentene skilles med tab hvis linjen inneholder tab (for stier med mellomrom), ellers med mellomrom.
+ * Samme nøkkel kan gis flere ganger, f.eks. "WEAVE path=src path=README.md".
+ */
+class DaemonRequest {
+
+    private final String command;
+    private final Map<String, List<String>> arguments;
+
+    private DaemonRequest(String command, Map<String, List<String>> arguments) {
+        this.command = command;
+        this.arguments = arguments;
+    }
+
+    /**
+     * @throws IllegalArgumentException hvis et argument ikke er på formen key=value
+     */
+    static DaemonRequest parse(String line) {
+        String[] tokens = line.indexOf('\t') >= 0 ? line.strip().split("\t+") : line.strip().split("\\s+");
+        Map<String, List<String>> arguments = new LinkedHashMap<>();
+        for (int i = 1; i < tokens.length; i++) {
+            int eq = tokens[i].indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Forventet key=value, fikk: " + tokens[i]);
+            }
+            String key = tokens[i].substring(0, eq).toLowerCase(Locale.ROOT);
+            arguments.computeIfAbsent(key, k -> new ArrayList<>()).add(tokens[i].substring(eq + 1));
+        }
+        return new DaemonRequest(tokens[0].toUpperCase(Locale.ROOT), arguments);
+    }
+
+    String getCommand() {
+        return command;
+    }
+
+    List<String> getAll(String key) {
+        return arguments.getOrDefault(key, Collections.emptyList());
+    }
+
+    /** Siste verdi for nøkkelen, eller defaultValue hvis den ikke er gitt. */
+    String get(String key, String defaultValue) {
+        List<String> values = getAll(key);
+        return values.isEmpty() ? defaultValue : values.get(values.size() - 1);
+    }
+
+    boolean getFlag(String key) {
+        String value = get(key, "false").toLowerCase(Locale.ROOT);
+        return value.equals("true") || value.equals("1") || value.equals("yes") || value.equals("all");
+    }
+}
@@ -0,0 +1,421 @@
+package com.contextweaver.app.daemon;
+
+import com.contextweaver.app.model.FilterMode;
+import com.contextweaver.app.model.Workspace;
+import com.contextweaver.app.model.WorkspaceRoot;
+import com.contextweaver.app.service.GitChangeScanner;
+import com.contextweaver.app.service.PathFilter;
+import com.contextweaver.app.service.ProjectScanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Holder filtreet for arbeidsområdet varmt i minnet, slik at daemonen kan svare uten å skanne på nytt.
+ * - Røttene skannes samtidig med ProjectScanner (samme filtrering som i GUI-et).
+ * - Alle skannede mapper overvåkes med en WatchService. Nye/slettede filer og mapper oppdateres
+ *   inkrementelt; endret innhold trenger ingen oppdatering her (Weaver-cachen sjekker mtime).
+ * - Røtter der overvåkingen har mistet hendelser (OVERFLOW) skannes på nytt etter en kort pause uten nye hendelser.
+ * - Git-røtter: mappene registreres for overvåking én gang når indeksen åpnes. Ved endringer i arbeidskatalogen,
+ *   eller i .git/index, HEAD og refs, kjøres bare git på nytt (ingen ny gjennomgang av hele filtreet).
+ */
+public class WarmIndex implements Closeable {
+
+    // Så lenge venter vi på flere hendelser før en rot skannes på nytt
+    private static final long RESCAN_DEBOUNCE_MS = 200;
+    // Filene direkte i .git som endrer listen over endrede filer; resten (objects, logs, *.lock, ...) ignoreres
+    private static final Set<String> GIT_STATE_FILES = Set.of("index", "HEAD", "packed-refs");
+
+    /** Indeksen for én rot. Settene kan leses fra alle tråder mens de oppdateres. */
+    static final class RootIndex {
+        private final WorkspaceRoot root;
+        private final NavigableSet<Path> files = new ConcurrentSkipListSet<>();
+        private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+        private RootIndex(WorkspaceRoot root) {
+            this.root = root;
+        }
+
+        WorkspaceRoot getRoot() {
+            return root;
+        }
+
+        /** Filene under roten, sortert som i filtreet. */
+        NavigableSet<Path> getFiles() {
+            return files;
+        }
+    }
+
+    /** Én åpnet versjon av arbeidsområdet, med egen WatchService og overvåkingstråd. */
+    private final class State {
+        private final Workspace workspace;
+        private final String baseRef;
+        private final List<RootIndex> roots = new ArrayList<>();
+        private final WatchService watchService;
+        private final Map<WatchKey, Integer> watchedRoots = new ConcurrentHashMap<>();
+        private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+        private final AtomicInteger unwatchedDirectories = new AtomicInteger();
+
+        private State(Workspace workspace, String baseRef) throws IOException {
+            this.workspace = workspace;
+            this.baseRef = baseRef;
+            this.watchService = FileSystems.getDefault().newWatchService();
+            workspace.getRoots().forEach(root -> roots.add(new RootIndex(root)));
+        }
+    }
+
+    private final ProjectScanner projectScanner = new ProjectScanner();
+    private final GitChangeScanner gitChangeScanner = new GitChangeScanner();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ExecutorService scanExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "daemon-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile State state;
+
+    /**
+     * Erstatter arbeidsområdet og skanner alle røtter (samtidig). Returnerer når indeksen er klar.
+     */
+    public synchronized void open(Workspace workspace, String baseRef) throws IOException {
+        State newState = new State(new Workspace(workspace), baseRef);
+
+        List<Future<?>> scans = new ArrayList<>();
+        for (int i = 0; i < newState.roots.size(); i++) {
+            int rootIndex = i;
+            scans.add(scanExecutor.submit(() -> {
+                if (newState.roots.get(rootIndex).root.getFilterMode() == FilterMode.GIT_CHANGED) {
+                    watchGitRoot(newState, rootIndex);
+                }
+                rescanRoot(newState, rootIndex);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> scan : scans) {
+                scan.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            newState.watchService.close();
+            throw new IOException("Skanning avbrutt", e);
+        } catch (ExecutionException e) {
+            newState.watchService.close();
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        State previous = state;
+        state = newState;
+        generation.incrementAndGet();
+        if (previous != null) {
+            // Overvåkingstråden til forrige versjon avslutter når WatchService lukkes
+            previous.watchService.close();
+        }
+
+        Thread watcher = new Thread(() -> watchLoop(newState), "daemon-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /** Skanner alle røtter på nytt med samme innstillinger. */
+    public void refresh() throws IOException {
+        State current = state;
+        if (current != null) {
+            open(current.workspace, current.baseRef);
+        }
+    }
+
+    public Workspace getWorkspace() {
+        State current = state;
+        return current != null ? current.workspace : new Workspace();
+    }
+
+    /** Indeksen per rot, i samme rekkefølge som røttene i arbeidsområdet. */
+    List<RootIndex> getRoots() {
+        State current = state;
+        return current != null ? Collections.unmodifiableList(current.roots) : Collections.emptyList();
+    }
+
+    /** Økes hver gang indeksen endres, slik at klienter kan se om noe er nytt. */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public int getWatchedDirectoryCount() {
+        State current = state;
+        return current != null ? current.watchedDirectories.size() : 0;
+    }
+
+    /** Mapper som ikke kunne overvåkes (f.eks. fordi OS-grensen for inotify-watches er nådd). */
+    public int getUnwatchedDirectoryCount() {
+        State current = state;
+        return current != null ? current.unwatchedDirectories.get() : 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        State current = state;
+        state = null;
+        scanExecutor.shutdownNow();
+        if (current != null) {
+            current.watchService.close();
+        }
+    }
+
+    // --- Skanning ---
+
+    /**
+     * Leser roten på nytt. I git-modus spørres bare git; mappene er allerede registrert av watchGitRoot.
+     */
+    private void rescanRoot(State target, int rootIndex) throws IOException {
+        RootIndex index = target.roots.get(rootIndex);
+        Path rootPath = index.root.getPath();
+        FilterMode mode = index.root.getFilterMode();
+
+        NavigableSet<Path> files = new ConcurrentSkipListSet<>();
+        if (mode == FilterMode.GIT_CHANGED) {
+            ProjectScanner.Listener listener = (directory, children) -> {
+                for (ProjectScanner.Entry child : children) {
+                    if (!child.isDirectory()) files.add(child.getPath());
+                }
+            };
+            projectScanner.scanPaths(rootPath, gitChangeScanner.findChangedFiles(rootPath, target.baseRef),
+                    mode, listener, () -> false);
+        } else {
+            scanDirectories(target, rootIndex, rootPath, mode, files);
+        }
+
+        // Oppdater settet på plass, så klienter som leser samtidig aldri ser en tom indeks
+        index.files.retainAll(files);
+        index.files.addAll(files);
+    }
+
+    /**
+     * Registrerer overvåking for en git-rot: alle mappene i arbeidskatalogen (som i Smart-modus), siden endringer
+     * kan dukke opp hvor som helst, pluss .git og .git/refs, slik at commit/checkout/add også gir ny liste.
+     * Gjøres én gang når indeksen åpnes (og etter OVERFLOW); nye mapper registreres etter hvert som de dukker opp.
+     */
+    private void watchGitRoot(State target, int rootIndex) {
+        Path rootPath = target.roots.get(rootIndex).root.getPath();
+        scanDirectories(target, rootIndex, rootPath, FilterMode.SMART, null);
+        Path gitDir = rootPath.resolve(".git");
+        if (Files.isDirectory(gitDir)) {
+            watch(target, rootIndex, gitDir);
+            Path refs = gitDir.resolve("refs");
+            if (Files.isDirectory(refs)) {
+                watchTree(target, rootIndex, refs);
+            }
+        }
+    }
+
+    /** Overvåker en mappe med alle undermapper, uten filtrering (brukes for .git/refs). */
+    private void watchTree(State target, int rootIndex, Path directory) {
+        try (Stream<Path> tree = Files.walk(directory)) {
+            tree.filter(Files::isDirectory).forEach(dir -> watch(target, rootIndex, dir));
+        } catch (IOException | UncheckedIOException e) {
+            target.unwatchedDirectories.incrementAndGet();
+        }
+    }
+
+    /**
+     * Skanner en mappe (med undermapper), registrerer mappene for overvåking og legger filene i files (hvis ikke null).
+     */
+    private void scanDirectories(State target, int rootIndex, Path directory, FilterMode mode, Set<Path> files) {
+        RootIndex index = target.roots.get(rootIndex);
+        // Hver mappe registreres før den leses (undermappene når forelderen rapporteres), så filer og mapper
+        // som opprettes mens vi skanner gir en hendelse i stedet for å gå tapt
+        if (index.directories.add(directory)) {
+            watch(target, rootIndex, directory);
+        }
+        projectScanner.scan(directory, mode, (dir, children) -> {
+            for (ProjectScanner.Entry child : children) {
+                if (child.isDirectory()) {
+                    if (index.directories.add(child.getPath())) {
+                        watch(target, rootIndex, child.getPath());
+                    }
+                } else if (files != null) {
+                    files.add(child.getPath());
+                }
+            }
+        }, () -> false);
+    }
+
+    private void watch(State target, int rootIndex, Path directory) {
+        try {
+            WatchKey key = directory.register(target.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            target.watchedRoots.put(key, rootIndex);
+            target.watchedDirectories.put(key, directory);
+        } catch (ClosedWatchServiceException e) {
+            // Arbeidsområdet er allerede erstattet
+        } catch (IOException e) {
+            target.unwatchedDirectories.incrementAndGet();
+        }
+    }
+
+    // --- Overvåking ---
+
+    private void watchLoop(State watched) {
+        Set<Integer> dirtyRoots = new HashSet<>();
+        try {
+            while (true) {
+                WatchKey key = dirtyRoots.isEmpty()
+                        ? watched.watchService.take()
+                        : watched.watchService.poll(RESCAN_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    // Ingen nye hendelser på en stund: skann røttene som trenger det
+                    rescanDirtyRoots(watched, dirtyRoots);
+                    continue;
+                }
+                Integer rootIndex = watched.watchedRoots.get(key);
+                Path directory = watched.watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (rootIndex != null && directory != null) {
+                        applyEvent(watched, rootIndex, directory, event, dirtyRoots);
+                    }
+                }
+                if (!key.reset()) {
+                    // Mappen er slettet
+                    watched.watchedRoots.remove(key);
+                    watched.watchedDirectories.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Arbeidsområdet er lukket eller erstattet
+        }
+    }
+
+    private void applyEvent(State watched, int rootIndex, Path directory, WatchEvent<?> event, Set<Integer> dirtyRoots) {
+        RootIndex index = watched.roots.get(rootIndex);
+        FilterMode mode = index.root.getFilterMode();
+        WatchEvent.Kind<?> kind = event.kind();
+
+        if (mode == FilterMode.GIT_CHANGED) {
+            applyGitEvent(watched, rootIndex, directory, event, dirtyRoots);
+            return;
+        }
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            dirtyRoots.add(rootIndex);
+            return;
+        }
+        if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+            return;
+        }
+
+        Path child = directory.resolve((Path) event.context());
+        synchronized (this) {
+            if (watched != state) return;
+
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    return; // Allerede borte igjen
+                }
+                if (PathFilter.shouldSkip(child, attrs.isRegularFile(), mode)) return;
+                if (attrs.isDirectory()) {
+                    // Ny mappe (f.eks. flyttet inn): skann den, den kan allerede ha innhold
+                    scanDirectories(watched, rootIndex, child, mode, index.files);
+                } else {
+                    index.files.add(child);
+                }
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                index.files.remove(child);
+                if (index.directories.remove(child)) {
+                    index.files.removeIf(path -> path.startsWith(child));
+                    index.directories.removeIf(path -> path.startsWith(child));
+                }
+            }
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Git-røtter: avgjør om hendelsen kan endre listen over endrede filer, og hold overvåkingen oppdatert
+     * for nye mapper. Selve listen hentes fra git når det har vært stille en stund (rescanDirtyRoots).
+     */
+    private void applyGitEvent(State watched, int rootIndex, Path directory, WatchEvent<?> event, Set<Integer> dirtyRoots) {
+        WatchEvent.Kind<?> kind = event.kind();
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            // Mistede hendelser kan være nye mapper: registrer det som mangler (bare nye mapper legges til)
+            synchronized (this) {
+                if (watched == state) {
+                    watchGitRoot(watched, rootIndex);
+                }
+            }
+            dirtyRoots.add(rootIndex);
+            return;
+        }
+
+        Path gitDir = watched.roots.get(rootIndex).root.getPath().resolve(".git");
+        Path child = directory.resolve((Path) event.context());
+        if (directory.equals(gitDir)) {
+            // Skriving i objects/, logs/, *.lock osv. (f.eks. editorens egen git status) endrer ingenting
+            if (!GIT_STATE_FILES.contains(child.getFileName().toString())) return;
+        } else if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+            synchronized (this) {
+                if (watched != state) return;
+                if (directory.startsWith(gitDir)) {
+                    watchTree(watched, rootIndex, child);
+                } else if (!PathFilter.shouldSkip(child, false, FilterMode.SMART)) {
+                    scanDirectories(watched, rootIndex, child, FilterMode.SMART, null);
+                }
+            }
+        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            watched.roots.get(rootIndex).directories.removeIf(path -> path.startsWith(child));
+        }
+        dirtyRoots.add(rootIndex);
+    }
+
+    private void rescanDirtyRoots(State watched, Set<Integer> dirtyRoots) {
+        synchronized (this) {
+            if (watched == state) {
+                for (int rootIndex : dirtyRoots) {
+                    try {
+                        rescanRoot(watched, rootIndex);
+                    } catch (IOException e) {
+                        System.err.println("Kunne ikke skanne " + watched.roots.get(rootIndex).root.getPath()
+                                + " på nytt: " + e.getMessage());
+                    }
+                }
+                generation.incrementAndGet();
+            }
+        }
+        dirtyRoots.clear();
+    }
+}
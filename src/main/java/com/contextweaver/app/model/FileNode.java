@@ -8,18 +8,43 @@ import java.nio.file.Path;
  */
 public class FileNode {
     private final Path path;
+    private final String displayName;
+
+    // Satt når filen skal veves som outline (kun signaturer)
+    private boolean outline;
 
     public FileNode(Path path) {
+        this(path, null);
+    }
+
+    /**
+     * Node med eget visningsnavn, f.eks. for rotmapper i et arbeidsområde med flere røtter.
+     */
+    public FileNode(Path path, String displayName) {
         this.path = path;
+        this.displayName = displayName;
     }
 
     public Path getPath() {
         return path;
     }
 
+    public boolean isOutline() {
+        return outline;
+    }
+
+    public void setOutline(boolean outline) {
+        this.outline = outline;
+    }
+
     @Override
     public String toString() {
+        if (displayName != null) {
+            return displayName;
+        }
         // Viser kun det siste elementet i stien (fil- eller mappenavnet) for et renere UI.
-        return path.getFileName().toString();
+        Path fileName = path.getFileName();
+        String name = fileName != null ? fileName.toString() : path.toString();
+        return outline ? name + "  [outline]" : name;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package com.contextweaver.app.model;
+
+/**
+ * Filtreringsmodus for en rotmappe i arbeidsområdet.
+ * Rekkefølgen matcher valgene i filterModeComboBox.
+ */
+public enum FilterMode {
+    SMART("Smart"),                // Skjuler cache/build/IDE-mapper osv.
+    ALL_FILES("Alle filer"),       // Viser alle mapper/filer (bortsett fra binært/media/.env/lockfiles)
+    GIT_CHANGED("Git-endringer");  // Kun filer som er endret i git (og mappene de ligger i)
+
+    private final String shortName;
+
+    FilterMode(String shortName) {
+        this.shortName = shortName;
+    }
+
+    public String getShortName() {
+        return shortName;
+    }
+}
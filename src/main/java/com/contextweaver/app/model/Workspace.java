@@ -0,0 +1,138 @@
+package com.contextweaver.app.model;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Arbeidsområde med én eller flere rotmapper (f.eks. flere checkouts som alltid veves sammen).
+ * Holder styr på unike navn per rot og gir rot-kvalifiserte relative stier til output.
+ */
+public class Workspace {
+    private final List<WorkspaceRoot> roots = new ArrayList<>();
+
+    public Workspace() {
+    }
+
+    /**
+     * Kopi av røttene, slik at bakgrunnsoppgaver kan jobbe mot et stabilt øyeblikksbilde
+     * selv om brukeren legger til eller fjerner røtter i mellomtiden.
+     */
+    public Workspace(Workspace other) {
+        roots.addAll(other.roots);
+    }
+
+    /**
+     * Legger til en rotmappe. Finnes den fra før, returneres eksisterende rot uendret.
+     * Nøstede røtter avvises: den ytre roten ville skannet den indre på nytt, og de samme filene
+     * ville blitt vevd to ganger.
+     *
+     * @throws IllegalArgumentException hvis mappen ligger inni (eller inneholder) en eksisterende rot
+     */
+    public WorkspaceRoot addRoot(Path path, FilterMode filterMode) {
+        Path normalized = path.toAbsolutePath().normalize();
+        for (WorkspaceRoot root : roots) {
+            if (root.getPath().equals(normalized)) {
+                return root;
+            }
+        }
+        for (WorkspaceRoot root : roots) {
+            if (normalized.startsWith(root.getPath())) {
+                throw new IllegalArgumentException(normalized + " ligger allerede inni roten " + root.getLabel());
+            }
+            if (root.getPath().startsWith(normalized)) {
+                throw new IllegalArgumentException(normalized + " inneholder allerede roten " + root.getLabel());
+            }
+        }
+        WorkspaceRoot root = new WorkspaceRoot(normalized, uniqueLabel(normalized), filterMode);
+        roots.add(root);
+        return root;
+    }
+
+    public boolean removeRoot(WorkspaceRoot root) {
+        return roots.remove(root);
+    }
+
+    public List<WorkspaceRoot> getRoots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    public boolean isEmpty() {
+        return roots.isEmpty();
+    }
+
+    public boolean isMultiRoot() {
+        return roots.size() > 1;
+    }
+
+    /**
+     * Navnet som brukes i GUI og i "Project:"-headeren i output.
+     */
+    public String getDisplayName() {
+        return roots.stream().map(WorkspaceRoot::getLabel).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Nærmeste felles forelder for alle røtter. Brukes som (usynlig) rotnode når vi har flere røtter.
+     * Hvis røttene ikke har noe felles (f.eks. ulike disker på Windows), brukes første rot.
+     */
+    public Path getCommonAncestor() {
+        if (roots.isEmpty()) return null;
+        Path common = roots.get(0).getPath();
+        for (WorkspaceRoot root : roots) {
+            while (common != null && !root.getPath().startsWith(common)) {
+                common = common.getParent();
+            }
+        }
+        return common != null ? common : roots.get(0).getPath();
+    }
+
+    /**
+     * Finner roten en fil hører til (den dypeste, hvis flere skulle passe).
+     */
+    public WorkspaceRoot findRoot(Path file) {
+        WorkspaceRoot best = null;
+        for (WorkspaceRoot root : roots) {
+            if (file.startsWith(root.getPath())
+                    && (best == null || root.getPath().getNameCount() > best.getPath().getNameCount())) {
+                best = root;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Relativ sti til bruk i output. Med flere røtter prefikses stien med rotens navn,
+     * slik at filer med samme relative sti i ulike checkouts kan skilles fra hverandre.
+     */
+    public String relativePathOf(Path file) {
+        WorkspaceRoot root = findRoot(file);
+        if (root == null) {
+            return file.toString().replace('\\', '/');
+        }
+        String relative = root.getPath().relativize(file).toString().replace('\\', '/');
+        return isMultiRoot() ? root.getLabel() + "/" + relative : relative;
+    }
+
+    private String uniqueLabel(Path path) {
+        Path fileName = path.getFileName();
+        String base = fileName != null ? fileName.toString() : path.toString();
+        String label = base;
+        int counter = 2;
+        while (hasLabel(label)) {
+            label = base + "-" + counter++;
+        }
+        return label;
+    }
+
+    private boolean hasLabel(String label) {
+        for (WorkspaceRoot root : roots) {
+            if (root.getLabel().equals(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
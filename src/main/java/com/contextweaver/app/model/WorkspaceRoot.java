@@ -0,0 +1,41 @@
+package com.contextweaver.app.model;
+
+import java.nio.file.Path;
+
+/**
+ * Én rotmappe i arbeidsområdet, med egen filtreringsmodus.
+ * Label er det unike navnet roten får i output (f.eks. "api/src/Main.java").
+ */
+public class WorkspaceRoot {
+    private final Path path;
+    private final String label;
+    private FilterMode filterMode;
+
+    public WorkspaceRoot(Path path, String label, FilterMode filterMode) {
+        this.path = path;
+        this.label = label;
+        this.filterMode = filterMode;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public FilterMode getFilterMode() {
+        return filterMode;
+    }
+
+    public void setFilterMode(FilterMode filterMode) {
+        this.filterMode = filterMode;
+    }
+
+    @Override
+    public String toString() {
+        // Vises i rot-listen i GUI-et
+        return label + "  [" + filterMode.getShortName() + "]";
+    }
+}
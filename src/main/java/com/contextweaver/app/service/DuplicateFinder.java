@@ -0,0 +1,301 @@
+package com.contextweaver.app.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Finner filer med identisk innhold blant valgte filer, slik at hvert unike innhold bare veves én gang.
+ * - Filer med unik størrelse kan ikke ha duplikater, og leses ikke i det hele tatt.
+ * - Resten hashes i parallell med CRC32C (rask, ikke-kryptografisk), cachet på sti/størrelse/mtime.
+ * - Filer med lik størrelse og hash sammenlignes byte for byte (Files.mismatch) før de regnes som like.
+ *   Sammenligningene kjøres også i parallell, og resultatet caches på begge filenes størrelse/mtime,
+ *   så et nytt søk (f.eks. oppsummeringen ved hvert klikk) ikke leser duplikatene på nytt.
+ */
+public class DuplicateFinder {
+
+    // Mindre filer enn dette er ikke verdt en referanse (referansen er omtrent like lang som innholdet)
+    public static final long MIN_DUPLICATE_SIZE = 128;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final class ContentHash {
+        private final long size;
+        private final long lastModified;
+        private final int crc;
+
+        private ContentHash(long size, long lastModified, int crc) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc = crc;
+        }
+    }
+
+    /** Resultatet av én byte-for-byte-sammenligning, gyldig så lenge ingen av filene er endret. */
+    private static final class Comparison {
+        private final long originalSize;
+        private final long originalModified;
+        private final long size;
+        private final long lastModified;
+        private final boolean identical;
+
+        private Comparison(long originalSize, long originalModified, long size, long lastModified, boolean identical) {
+            this.originalSize = originalSize;
+            this.originalModified = originalModified;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.identical = identical;
+        }
+    }
+
+    /** Filer som kan være like: samme størrelse, samme outline-valg og (etter hashing) samme CRC. */
+    private static final class GroupKey {
+        private final long size;
+        private final boolean outline;
+        private final int crc;
+
+        private GroupKey(long size, boolean outline, int crc) {
+            this.size = size;
+            this.outline = outline;
+            this.crc = crc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GroupKey)) return false;
+            GroupKey other = (GroupKey) o;
+            return size == other.size && outline == other.outline && crc == other.crc;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, outline, crc);
+        }
+    }
+
+    private final Map<Path, ContentHash> hashes = new ConcurrentHashMap<>();
+    // Nøkkel: [original, fil]
+    private final Map<List<Path>, Comparison> comparisons = new ConcurrentHashMap<>();
+
+    private final ExecutorService hashExecutor = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+        Thread thread = new Thread(runnable, "content-hash");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ThreadLocal<ByteBuffer> readBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+    /**
+     * Returnerer duplikatene i utvalget. Den første filen (i listens rekkefølge) med et gitt innhold
+     * regnes som originalen. Filer som veves med og uten outline slås ikke sammen.
+     *
+     * @param outline   avgjør om en fil skal veves som outline
+     * @param cancelled sjekkes underveis; kaster CancellationException hvis den blir true
+     */
+    public DuplicateSet find(List<Path> requestedFiles, Predicate<Path> outline, BooleanSupplier cancelled) {
+        // Samme sti to ganger er ikke et duplikat (den ville blitt en referanse til seg selv)
+        List<Path> files = new ArrayList<>(new LinkedHashSet<>(requestedFiles));
+        int count = files.size();
+        long[] sizes = new long[count];
+        long[] lastModified = new long[count];
+
+        // 1) Størrelse og mtime for alle filer (-1 = kan ikke leses)
+        forEachParallel(count, i -> {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(files.get(i), BasicFileAttributes.class);
+                sizes[i] = attrs.isRegularFile() ? attrs.size() : -1;
+                lastModified[i] = attrs.lastModifiedTime().toMillis();
+            } catch (IOException e) {
+                sizes[i] = -1;
+            }
+        }, cancelled);
+
+        // 2) Kun filer som deler størrelse med en annen fil trenger å hashes
+        Map<Long, Integer> sizeCounts = new HashMap<>();
+        for (long size : sizes) {
+            if (size >= MIN_DUPLICATE_SIZE) {
+                sizeCounts.merge(size, 1, Integer::sum);
+            }
+        }
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (sizes[i] >= MIN_DUPLICATE_SIZE && sizeCounts.get(sizes[i]) > 1) {
+                candidates.add(i);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return DuplicateSet.EMPTY;
+        }
+
+        // 3) Hash kandidatene i parallell
+        int[] crcs = new int[count];
+        boolean[] hashed = new boolean[count];
+        forEachParallel(candidates.size(), c -> {
+            int i = candidates.get(c);
+            Path path = files.get(i);
+            ContentHash cached = hashes.get(path);
+            if (cached != null && cached.size == sizes[i] && cached.lastModified == lastModified[i]) {
+                crcs[i] = cached.crc;
+                hashed[i] = true;
+                return;
+            }
+            try {
+                crcs[i] = crc32c(path);
+                hashed[i] = true;
+                hashes.put(path, new ContentHash(sizes[i], lastModified[i], crcs[i]));
+            } catch (IOException e) {
+                // Kan ikke leses nå – regnes ikke som duplikat
+            }
+        }, cancelled);
+
+        // 4) Del kandidatene i grupper (i listens rekkefølge)
+        Map<GroupKey, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i : candidates) {
+            if (hashed[i]) {
+                groups.computeIfAbsent(new GroupKey(sizes[i], outline.test(files.get(i)), crcs[i]), k -> new ArrayList<>())
+                        .add(i);
+            }
+        }
+        List<List<Integer>> remaining = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            if (group.size() > 1) remaining.add(group);
+        }
+
+        // 5) Verifiser byte for byte, i runder: første gjenværende fil i hver gruppe er original, og resten
+        //    sammenlignes med den (alle grupper i parallell). Filer som ikke var like går videre til neste runde.
+        int[] originalOf = new int[count];
+        Arrays.fill(originalOf, -1);
+        while (!remaining.isEmpty()) {
+            List<int[]> pairs = new ArrayList<>();
+            for (List<Integer> group : remaining) {
+                for (int m = 1; m < group.size(); m++) {
+                    pairs.add(new int[]{group.get(0), group.get(m)});
+                }
+            }
+            forEachParallel(pairs.size(), p -> {
+                int[] pair = pairs.get(p);
+                if (isIdentical(files.get(pair[0]), sizes[pair[0]], lastModified[pair[0]],
+                        files.get(pair[1]), sizes[pair[1]], lastModified[pair[1]])) {
+                    originalOf[pair[1]] = pair[0];
+                }
+            }, cancelled);
+
+            List<List<Integer>> next = new ArrayList<>();
+            for (List<Integer> group : remaining) {
+                List<Integer> different = new ArrayList<>();
+                for (int m = 1; m < group.size(); m++) {
+                    if (originalOf[group.get(m)] < 0) different.add(group.get(m));
+                }
+                if (different.size() > 1) next.add(different);
+            }
+            remaining = next;
+        }
+
+        Map<Path, Path> originals = new LinkedHashMap<>();
+        Map<Path, Long> duplicateSizes = new HashMap<>();
+        for (int i : candidates) {
+            if (originalOf[i] >= 0) {
+                originals.put(files.get(i), files.get(originalOf[i]));
+                duplicateSizes.put(files.get(i), sizes[i]);
+            }
+        }
+        return originals.isEmpty() ? DuplicateSet.EMPTY : new DuplicateSet(originals, duplicateSizes);
+    }
+
+    public void clear() {
+        hashes.clear();
+        comparisons.clear();
+    }
+
+    private boolean isIdentical(Path original, long originalSize, long originalModified,
+                                Path path, long size, long lastModified) {
+        List<Path> key = List.of(original, path);
+        Comparison cached = comparisons.get(key);
+        if (cached != null && cached.originalSize == originalSize && cached.originalModified == originalModified
+                && cached.size == size && cached.lastModified == lastModified) {
+            return cached.identical;
+        }
+        boolean identical;
+        try {
+            identical = Files.mismatch(original, path) == -1L;
+        } catch (IOException e) {
+            // Behandles som ulike, og caches ikke (filen kan bli lesbar igjen)
+            return false;
+        }
+        comparisons.put(key, new Comparison(originalSize, originalModified, size, lastModified, identical));
+        return identical;
+    }
+
+    private int crc32c(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = readBuffers.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Deler indeksene 0..count-1 i like store biter og kjører dem på hash-trådene. Venter til alt er ferdig.
+     */
+    private void forEachParallel(int count, IntConsumer action, BooleanSupplier cancelled) {
+        if (count == 0) return;
+        int chunks = Math.min(count, PARALLELISM * 4);
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int from = (int) ((long) count * c / chunks);
+            int to = (int) ((long) count * (c + 1) / chunks);
+            futures.add(hashExecutor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException("Duplikatsøk avbrutt");
+                    }
+                    action.accept(i);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Duplikatsøk avbrutt");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+}
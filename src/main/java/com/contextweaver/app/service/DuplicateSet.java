@@ -0,0 +1,41 @@
+package com.contextweaver.app.service;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resultatet av duplikatsøket: hvilke filer som har identisk innhold med en tidligere fil i utvalget.
+ */
+public class DuplicateSet {
+
+    public static final DuplicateSet EMPTY = new DuplicateSet(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<Path, Path> originals;
+    private final Map<Path, Long> sizes;
+
+    public DuplicateSet(Map<Path, Path> originals, Map<Path, Long> sizes) {
+        this.originals = originals;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Returnerer filen med samme innhold som kom først i utvalget, eller null hvis filen ikke er et duplikat.
+     */
+    public Path getOriginal(Path path) {
+        return originals.get(path);
+    }
+
+    public boolean isDuplicate(Path path) {
+        return originals.containsKey(path);
+    }
+
+    public int getDuplicateCount() {
+        return originals.size();
+    }
+
+    /** Størrelsen på duplikatet på disk (0 hvis filen ikke er et duplikat). */
+    public long getSize(Path path) {
+        return sizes.getOrDefault(path, 0L);
+    }
+}
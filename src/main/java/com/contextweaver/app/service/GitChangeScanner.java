@@ -0,0 +1,145 @@
+package com.contextweaver.app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Finner endrede filer i et git-repo ved å spørre en lokal git-prosess.
+ * Brukes av "Kun endrede filer (git)"-modus, slik at vi slipper å gå gjennom hele filtreet
+ * når vi bare trenger det som er endret på en branch.
+ */
+public class GitChangeScanner {
+
+    public static final String DEFAULT_BASE_REF = "HEAD";
+
+    /** Hvor ofte vi sjekker om skanningen er avbrutt mens git kjører. */
+    private static final long CANCEL_POLL_MILLIS = 50;
+
+    /**
+     * Returnerer (sortert) alle filer under rootPath som er endret, lagt til eller ulik baseRef.
+     * - Sporede filer sammenlignes mot merge-base mellom baseRef og HEAD (arbeidskatalog + index).
+     * - Usporede filer som ikke er ignorert (.gitignore) tas også med.
+     * - Slettede filer hoppes over, siden det ikke finnes noe innhold å veve.
+     */
+    public List<Path> findChangedFiles(Path rootPath, String baseRef) throws IOException {
+        return findChangedFiles(rootPath, baseRef, () -> false);
+    }
+
+    /**
+     * Som over, men avbrytbar: når cancelled blir true (eller tråden avbrytes) stoppes git-prosessen
+     * og det kastes CancellationException, på samme måte som i ProjectScanner.
+     */
+    public List<Path> findChangedFiles(Path rootPath, String baseRef, BooleanSupplier cancelled) throws IOException {
+        String base = (baseRef == null || baseRef.isBlank()) ? DEFAULT_BASE_REF : baseRef.trim();
+        String diffBase = resolveDiffBase(rootPath, base, cancelled);
+
+        // TreeSet: fjerner duplikater og gir samme sortering som Files.list(...).sorted()
+        TreeSet<Path> changed = new TreeSet<>();
+        addPaths(rootPath, changed, runGit(rootPath, cancelled, "diff", "--name-only", "-z", "--relative", diffBase, "--"));
+        addPaths(rootPath, changed, runGit(rootPath, cancelled, "ls-files", "--others", "--exclude-standard", "-z"));
+
+        List<Path> result = new ArrayList<>(changed.size());
+        for (Path path : changed) {
+            if (Files.isRegularFile(path)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * For andre refs enn HEAD bruker vi merge-base, slik at vi får "det jeg har endret på denne branchen"
+     * og ikke alt som har skjedd på base-branchen i mellomtiden.
+     */
+    private String resolveDiffBase(Path rootPath, String base, BooleanSupplier cancelled) throws IOException {
+        if (DEFAULT_BASE_REF.equals(base)) {
+            return base;
+        }
+        try {
+            String mergeBase = runGit(rootPath, cancelled, "merge-base", base, "HEAD").trim();
+            return mergeBase.isEmpty() ? base : mergeBase;
+        } catch (IOException e) {
+            // Ingen felles historikk (eller ukjent ref) – la git diff gi en tydelig feilmelding
+            return base;
+        }
+    }
+
+    private void addPaths(Path rootPath, TreeSet<Path> target, String nulSeparated) {
+        for (String entry : nulSeparated.split("\0")) {
+            if (!entry.isEmpty()) {
+                target.add(rootPath.resolve(entry).normalize());
+            }
+        }
+    }
+
+    /**
+     * Kjører git og returnerer stdout. Stderr går til en midlertidig fil, slik at mange advarsler
+     * (f.eks. CRLF-varsler per fil) ikke fyller pipen og får git til å henge mens vi leser stdout.
+     * Stdout leses på en egen tråd, så vi kan stoppe prosessen hvis skanningen avbrytes.
+     */
+    private String runGit(Path workingDir, BooleanSupplier cancelled, String... args) throws IOException {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("git " + args[0] + " ble avbrutt");
+        }
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+
+        Path errorFile = Files.createTempFile("contextweaver-git", ".err");
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(workingDir.toFile())
+                    .redirectError(errorFile.toFile())
+                    .start();
+            process.getOutputStream().close();
+
+            CompletableFuture<byte[]> stdout = CompletableFuture.supplyAsync(() -> {
+                try (InputStream out = process.getInputStream()) {
+                    return out.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, runnable -> {
+                Thread thread = new Thread(runnable, "git-stdout");
+                thread.setDaemon(true);
+                thread.start();
+            });
+
+            try {
+                while (!process.waitFor(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (cancelled.getAsBoolean()) {
+                        process.destroy();
+                        throw new CancellationException("git " + args[0] + " ble avbrutt");
+                    }
+                }
+                byte[] output = stdout.get();
+                if (process.exitValue() != 0) {
+                    String stderr = new String(Files.readAllBytes(errorFile), StandardCharsets.UTF_8);
+                    throw new IOException("git " + args[0] + " feilet: " + stderr.trim());
+                }
+                return new String(output, StandardCharsets.UTF_8);
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new CancellationException("git " + args[0] + " ble avbrutt");
+            } catch (ExecutionException e) {
+                throw new IOException("Kunne ikke lese utdata fra git " + args[0], e.getCause());
+            }
+        } finally {
+            Files.deleteIfExists(errorFile);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.contextweaver.app.service;
+
+import com.contextweaver.app.model.FilterMode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Filtreringsregler for filtreet. Delt mellom alle rotmapper i arbeidsområdet,
+ * der hver rot bruker sin egen FilterMode.
+ */
+public final class PathFilter {
+
+    /**
+     * Mapper / filer som skjules i SMART-modus.
+     * Typisk: build-output, cache, IDE, verktøy-mapper osv.
+     */
+    private static final List<String> DEFAULT_EXCLUDED_ITEMS = Arrays.asList(
+            // VCS / IDE / verktøy
+            ".git", ".svn", ".hg",
+            ".idea", ".vscode", ".fleet", ".settings",
+            ".gradle", ".terraform", ".dart_tool",
+
+            // Java / JVM / build
+            "target", "build", "out", "classes", ".scannerwork",
+
+            // Node / frontend / React / Next.js / diverse JS-rammeverk
+            "node_modules", ".next", ".turbo", ".vercel",
+            ".parcel-cache", ".yarn", ".pnpm-store", ".cache",
+            ".nuxt", ".svelte-kit",
+            "dist", "coverage", "storybook-static",
+
+            // Python / backend
+            "__pycache__", ".pytest_cache", ".mypy_cache", ".ruff_cache", ".tox", ".eggs",
+            "venv", ".venv", "env", ".venv.bak", ".conda",
+            "migrations", "alembic",
+
+            // Flutter / mobil
+            ".dart_tool", "build"
+    );
+
+    /**
+     * Filtyper vi aldri vil ha med (binært, media, store artefakter, runtime-filer osv.).
+     * Gjelder i alle moduser.
+     */
+    private static final List<String> ALWAYS_EXCLUDED_FILE_EXTENSIONS = Arrays.asList(
+            // Compiled / bytecode
+            ".class", ".pyc", ".pyo", ".o", ".obj",
+
+            // Arkiver / pakker / artefakter
+            ".zip", ".tar", ".gz", ".tgz", ".rar", ".7z",
+            ".jar", ".war", ".ear",
+            ".apk", ".aab", ".ipa",
+
+            // Executables / libs
+            ".exe", ".dll", ".so", ".dylib", ".bin",
+
+            // Bilder / media
+            ".png", ".jpg", ".jpeg", ".gif", ".bmp", ".svg", ".ico",
+            ".mp3", ".wav", ".ogg", ".flac",
+            ".mp4", ".mov", ".avi", ".mkv", ".webm",
+
+            // Fonts
+            ".ttf", ".otf", ".eot", ".woff", ".woff2",
+
+            // Databaser / større datafiler
+            ".db", ".sqlite", ".sqlite3",
+
+            // Logg- og runtime-filer
+            ".log"
+    );
+
+    /**
+     * Filnavn vi eksplisitt aldri vil ha med (lockfiles, hemmelige .env-filer etc.).
+     * Gjelder i alle moduser.
+     */
+    private static final List<String> ALWAYS_EXCLUDED_FILE_NAMES = Arrays.asList(
+            // JS / package managers
+            "package-lock.json",
+            "yarn.lock",
+            "pnpm-lock.yaml",
+
+            // Øvrige lockfiles
+            "composer.lock",
+            "Cargo.lock",
+            "poetry.lock",
+            "Pipfile.lock",
+
+            // Miljøfiler (inneholder ofte hemmeligheter)
+            ".env",
+            ".env.local",
+            ".env.development",
+            ".env.production",
+            ".env.test"
+    );
+
+    /**
+     * Sentralt filter: bestemmer om en path skal hoppes over (ikke være med i treet).
+     * - ALLTID ekskluderer binære/media/.env/lockfiles.
+     * - I SMART-modus ekskluderer vi i tillegg DEFAULT_EXCLUDED_ITEMS (cache/build/IDE osv.).
+     * - I GIT_CHANGED-modus har git allerede tatt hensyn til .gitignore, så kun ALLTID-reglene gjelder.
+     */
+    public static boolean shouldSkip(Path path, FilterMode filterMode) {
+        return shouldSkip(path, Files.isRegularFile(path), filterMode);
+    }
+
+    /**
+     * Samme som over, for når vi allerede vet om stien er en fil (sparer et filsystemkall per sti ved skanning).
+     */
+    public static boolean shouldSkip(Path path, boolean isRegularFile, FilterMode filterMode) {
+        String name = path.getFileName().toString();
+
+        // Hvis det er en fil, sjekk navn + extension (gjelder i alle moduser)
+        if (isRegularFile) {
+            String lowerName = name.toLowerCase(Locale.ROOT);
+
+            // Spesifikke filnavn (lockfiles, .env osv.)
+            if (ALWAYS_EXCLUDED_FILE_NAMES.contains(lowerName)) {
+                return true;
+            }
+
+            // Filendelser vi aldri vil ha med
+            for (String ext : ALWAYS_EXCLUDED_FILE_EXTENSIONS) {
+                if (lowerName.endsWith(ext)) {
+                    return true;
+                }
+            }
+        }
+
+        // SMART-modus: ekskluder kjente støy-mapper / filer
+        if (filterMode == FilterMode.SMART) {
+            if (DEFAULT_EXCLUDED_ITEMS.contains(name)) {
+                return true;
+            }
+        }
+
+        // ALL_FILES- og GIT_CHANGED-modus: vi hopper IKKE over DEFAULT_EXCLUDED_ITEMS,
+        // men binært/media/.env/lockfiles er allerede filtrert over.
+        return false;
+    }
+
+    private PathFilter() {
+    }
+}
@@ -0,0 +1,144 @@
+package com.contextweaver.app.service;
+
+import com.contextweaver.app.model.FilterMode;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Går gjennom en rotmappe og rapporterer innholdet mappe for mappe, i stedet for å bygge hele treet
+ * før noe vises. Mappene rapporteres i pre-order (en mappe alltid før sine undermapper), og barna er
+ * sortert som i Files.list(...).sorted(). Skanneren kjenner ikke til JavaFX, og kan avbrytes underveis.
+ */
+public class ProjectScanner {
+
+    /** Ett element (fil eller mappe) i en mappe. */
+    public static final class Entry {
+        private final Path path;
+        private final boolean directory;
+
+        public Entry(Path path, boolean directory) {
+            this.path = path;
+            this.directory = directory;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+    }
+
+    /** Kalles fra skannetråden for hver mappe som er lest. */
+    public interface Listener {
+        void onDirectory(Path directory, List<Entry> children);
+    }
+
+    /**
+     * Skanner hele rotmappen med gitt filtreringsmodus.
+     */
+    public void scan(Path root, FilterMode filterMode, Listener listener, BooleanSupplier cancelled) {
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Skanning avbrutt");
+            }
+            Path directory = pending.pop();
+            List<Entry> children = listDirectory(directory, filterMode);
+            listener.onDirectory(directory, children);
+
+            // Baklengs på stakken, slik at undermappene rapporteres i sortert rekkefølge
+            for (int i = children.size() - 1; i >= 0; i--) {
+                if (children.get(i).isDirectory()) {
+                    pending.push(children.get(i).getPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Rapporterer kun de oppgitte filene og mappene de ligger i (brukes i git-modus).
+     */
+    public void scanPaths(Path root, List<Path> files, FilterMode filterMode, Listener listener, BooleanSupplier cancelled) {
+        Map<Path, TreeSet<Path>> childrenByDirectory = new HashMap<>();
+        Set<Path> directories = new HashSet<>();
+        directories.add(root);
+
+        for (Path file : files) {
+            if (!file.startsWith(root) || PathFilter.shouldSkip(file, true, filterMode)) continue;
+            Path parent = file.getParent();
+            childrenByDirectory.computeIfAbsent(parent, k -> new TreeSet<>()).add(file);
+            // Sørg for at alle mappene mellom roten og filen finnes
+            while (!parent.equals(root) && directories.add(parent)) {
+                childrenByDirectory.computeIfAbsent(parent.getParent(), k -> new TreeSet<>()).add(parent);
+                parent = parent.getParent();
+            }
+        }
+
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Skanning avbrutt");
+            }
+            Path directory = pending.pop();
+            List<Entry> children = new ArrayList<>();
+            for (Path child : childrenByDirectory.getOrDefault(directory, new TreeSet<>())) {
+                children.add(new Entry(child, directories.contains(child)));
+            }
+            listener.onDirectory(directory, children);
+
+            for (int i = children.size() - 1; i >= 0; i--) {
+                if (children.get(i).isDirectory()) {
+                    pending.push(children.get(i).getPath());
+                }
+            }
+        }
+    }
+
+    private List<Entry> listDirectory(Path directory, FilterMode filterMode) {
+        List<Entry> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                boolean isDirectory;
+                boolean isFile;
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                    isDirectory = attrs.isDirectory();
+                    isFile = attrs.isRegularFile();
+                } catch (IOException e) {
+                    // Brutt symlink e.l. – vises som før, men uten innhold
+                    isDirectory = false;
+                    isFile = false;
+                }
+                if (!PathFilter.shouldSkip(child, isFile, filterMode)) {
+                    children.add(new Entry(child, isDirectory));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+        children.sort((a, b) -> a.getPath().compareTo(b.getPath()));
+        return children;
+    }
+}
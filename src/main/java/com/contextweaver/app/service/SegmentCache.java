@@ -0,0 +1,122 @@
+package com.contextweaver.app.service;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Cache for ferdig rendrede filsegmenter (header + innhold + footer), nøkkelet på sti, renderKey, størrelse og mtime.
+ * Lar oss veve på nytt uten å lese og rendre filer som ikke er endret siden forrige gang.
+ * Cachen har et byte-tak; når det nås, kastes de segmentene som er brukt minst nylig.
+ */
+public class SegmentCache {
+
+    private static final class Key {
+        private final Path path;
+        private final String renderKey;
+
+        private Key(Path path, String renderKey) {
+            this.path = path;
+            this.renderKey = renderKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return path.equals(other.path) && renderKey.equals(other.renderKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, renderKey);
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final byte[] bytes;
+
+        private Entry(long size, long lastModified, byte[] bytes) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+    }
+
+    // accessOrder = true: iterasjonsrekkefølgen er minst nylig brukt først
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long totalBytes;
+
+    public SegmentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returnerer det cachede segmentet, eller null hvis filen er endret (størrelse/mtime)
+     * eller ikke er rendret på denne måten (renderKey, f.eks. annet format eller annen relativ sti).
+     * Flere renderKeys for samme fil kan ligge side om side, slik at klienter med ulike valg ikke fortrenger hverandre.
+     */
+    public synchronized byte[] get(Path path, long size, long lastModified, String renderKey) {
+        Entry entry = entries.get(new Key(path, renderKey));
+        if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+            return null;
+        }
+        return entry.bytes;
+    }
+
+    /**
+     * Legger segmentet i cachen, og kaster de minst nylig brukte segmentene til det er plass.
+     * Returnerer false (og cacher ingenting) hvis segmentet alene er større enn byte-taket.
+     */
+    public synchronized boolean put(Path path, long size, long lastModified, String renderKey, byte[] bytes) {
+        Key key = new Key(path, renderKey);
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.bytes.length;
+        }
+        if (bytes.length > maxBytes) {
+            return false;
+        }
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes + bytes.length > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().bytes.length;
+            eldest.remove();
+        }
+        entries.put(key, new Entry(size, lastModified, bytes));
+        totalBytes += bytes.length;
+        return true;
+    }
+
+    /**
+     * Fjerner alle segmenter som ikke hører til de oppgitte filene,
+     * slik at cachen aldri blir større enn den siste vevingen.
+     */
+    public synchronized void retainOnly(Collection<Path> paths) {
+        Set<Path> keep = new HashSet<>(paths);
+        entries.entrySet().removeIf(entry -> {
+            if (keep.contains(entry.getKey().path)) return false;
+            totalBytes -= entry.getValue().bytes.length;
+            return true;
+        });
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+}
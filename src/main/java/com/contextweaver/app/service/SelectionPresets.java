@@ -0,0 +1,102 @@
+package com.contextweaver.app.service;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Hurtigvalg for filer, delt mellom GUI-et ("Velg vanlige kodefiler") og daemon-modus (preset=code).
+ */
+public final class SelectionPresets {
+
+    /**
+     * Vanlige kode-, konfig- og prosjektfiler vi typisk vil ha med i en AI-kontekst.
+     * Brukes av "Velg vanlige kodefiler"-preset.
+     */
+    public static final List<String> COMMON_CODE_EXTENSIONS = Arrays.asList(
+            // JVM / Java / Kotlin / Android
+            ".java", ".kt", ".kts",
+            ".groovy", ".gradle", ".gradle.kts",
+            ".properties",
+            "pom.xml", "build.gradle", "build.gradle.kts",
+            "settings.gradle", "settings.gradle.kts",
+            ".xml", ".yml", ".yaml",
+
+            // JavaScript / TypeScript / React / Next.js / frontend
+            ".js", ".jsx", ".ts", ".tsx",
+            ".mjs", ".cjs",
+            ".json",
+            ".html", ".htm",
+            ".css", ".scss", ".sass", ".less",
+
+            // Flutter / Dart
+            ".dart",
+            "pubspec.yaml", "analysis_options.yaml",
+
+            // Python
+            ".py", ".pyw",
+            ".toml", ".ini", ".cfg",
+            ".yaml", ".yml",
+
+            // C# / .NET
+            ".cs", ".fs", ".vb",
+
+            // C / C++ / Rust / Go
+            ".c", ".h", ".hpp", ".hh", ".cpp", ".cc", ".cxx",
+            ".rs", ".go",
+
+            // PHP / Ruby
+            ".php", ".phtml",
+            ".rb", ".rake",
+
+            // Swift / Obj-C
+            ".swift", ".m", ".mm",
+
+            // SQL / databasedefinisjoner
+            ".sql",
+
+            // Infra / devops / scripts
+            "Dockerfile",
+            "docker-compose.yml", "docker-compose.yaml",
+            ".sh", ".bash", ".zsh", ".ps1", ".bat",
+            "Makefile",
+
+            // Dokumentasjon / meta
+            ".md", ".markdown", ".txt", ".adoc", ".rst",
+
+            // Konfig-eksempler
+            ".env.example", ".env.template"
+    );
+
+    private SelectionPresets() {
+    }
+
+    /**
+     * Finner preset etter navn ("code" = vanlige kodefiler, "all" = alle filer i treet).
+     * Returnerer null for "all" (ingen filtrering), og kaster IllegalArgumentException for ukjente navn.
+     */
+    public static List<String> byName(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "code":
+                return COMMON_CODE_EXTENSIONS;
+            case "all":
+                return null;
+            default:
+                throw new IllegalArgumentException("Ukjent preset: " + name + " (bruk code eller all)");
+        }
+    }
+
+    /**
+     * True hvis filnavnet slutter på en av endelsene/navnene (uavhengig av store/små bokstaver).
+     */
+    public static boolean matches(Path path, List<String> extensions) {
+        String lowerName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String ext : extensions) {
+            if (lowerName.endsWith(ext.toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
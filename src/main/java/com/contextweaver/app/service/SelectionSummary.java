@@ -0,0 +1,51 @@
+package com.contextweaver.app.service;
+
+/**
+ * Oppsummering av valgte filer, slik den vises i "Sammendrag"-panelet.
+ */
+public class SelectionSummary {
+    private final int fileCount;
+    private final long totalBytes;
+    private final int outlinedFiles;
+    private final long estimatedBytes;
+    private final int duplicateFiles;
+    private final long duplicateBytes;
+
+    public SelectionSummary(int fileCount, long totalBytes, int outlinedFiles, long estimatedBytes,
+                            int duplicateFiles, long duplicateBytes) {
+        this.fileCount = fileCount;
+        this.totalBytes = totalBytes;
+        this.outlinedFiles = outlinedFiles;
+        this.estimatedBytes = estimatedBytes;
+        this.duplicateFiles = duplicateFiles;
+        this.duplicateBytes = duplicateBytes;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /** Samlet størrelse på filene slik de ligger på disk. */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getOutlinedFiles() {
+        return outlinedFiles;
+    }
+
+    /** Forventet størrelse på innholdet i output, etter outline og duplikater. */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /** Filer som veves som referanse til en identisk fil. */
+    public int getDuplicateFiles() {
+        return duplicateFiles;
+    }
+
+    /** Innhold (etter outline) som spares ved å skrive duplikatene som referanser. */
+    public long getDuplicateBytes() {
+        return duplicateBytes;
+    }
+}
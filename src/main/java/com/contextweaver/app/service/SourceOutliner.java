@@ -0,0 +1,543 @@
+package com.contextweaver.app.service;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lager en "outline" av en kildefil: package/imports, typedeklarasjoner, felt og metodesignaturer,
+ * mens metodekropper erstattes med en markør.
+ *
+ * Dette er en enkel tokenizer som går gjennom filen én gang (ingen AST), slik at outline av
+ * tusenvis av filer koster lite ekstra ved veving. Den forstår nok av strenger og kommentarer
+ * til at klammeparenteser inne i dem ikke forvirrer den, men er ikke en full parser.
+ * Støtter Java, Kotlin, TypeScript/JavaScript (klammeparenteser) og Python (innrykk).
+ */
+public final class SourceOutliner {
+
+    public static final String BODY_MARKER = "/* ... */";
+    public static final String PYTHON_BODY_MARKER = "...";
+
+    private static final List<String> BRACE_EXTENSIONS = List.of(
+            ".java", ".kt", ".kts", ".ts", ".tsx", ".js", ".jsx", ".mjs", ".cjs"
+    );
+    // Språk med regex-literaler (/.../flags), som kan inneholde klammeparenteser og anførselstegn
+    private static final List<String> SCRIPT_EXTENSIONS = List.of(".ts", ".tsx", ".js", ".jsx", ".mjs", ".cjs");
+    private static final List<String> PYTHON_EXTENSIONS = List.of(".py", ".pyw");
+
+    // Nøkkelord som åpner en typekropp (der vi beholder innholdet og går videre ned)
+    private static final Pattern TYPE_KEYWORD =
+            Pattern.compile("\\b(class|interface|enum|record|object|namespace|module)\\b");
+    // type Props = { ... } i TypeScript: typen er API, så hele literalen beholdes
+    private static final Pattern TYPE_ALIAS = Pattern.compile("(?:^|\\s)type\\s+[\\w$]+\\s*(?:<.*>\\s*)?=");
+    private static final Pattern TYPE_NAME = Pattern.compile("\\s*([\\w$]+)");
+    private static final Pattern FUNCTION_KEYWORD = Pattern.compile("\\b(fun|function)\\b");
+    // Kotlin: "fun interface Foo" er en type, ikke en funksjon
+    private static final Pattern FUN_INTERFACE = Pattern.compile("\\bfun\\s+$");
+    // import { a, b } from '...' / export { a, b } i TypeScript/JavaScript
+    private static final Pattern IMPORT_EXPORT_LIST = Pattern.compile("\\s*(import|export)(\\s+type)?\\s*");
+    // Det som kan stå mellom parameterlisten og kroppen: returtype (Kotlin/TS) eller throws (Java)
+    private static final Pattern SIGNATURE_TAIL = Pattern.compile("\\s*(?::[^=]*|throws\\b[^=]*)?");
+    // Initializer-blokker: { ... }, static { ... } (Java/TS) og init { ... } (Kotlin)
+    private static final Pattern INITIALIZER = Pattern.compile("(static|init)?");
+    // Nøkkelord som kan stå rett foran en regex-literal i JavaScript/TypeScript
+    private static final List<String> KEYWORDS_BEFORE_REGEX = List.of(
+            "return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw", "case", "do", "else",
+            "yield", "await"
+    );
+
+    /** En blokk vi har gått ned i: en typekropp (med navnet på typen) eller en literal. */
+    private static final class Block {
+        private final boolean typeBody;
+        private final String typeName;
+        // Deklarasjonen før literalen, slik at f.eks. "f(opts: {...}): T" fortsatt ser ut som en signatur etterpå
+        private final String declBefore;
+
+        private Block(boolean typeBody, String typeName, String declBefore) {
+            this.typeBody = typeBody;
+            this.typeName = typeName;
+            this.declBefore = declBefore;
+        }
+    }
+
+    private SourceOutliner() {
+    }
+
+    public static boolean supports(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return endsWithAny(name, BRACE_EXTENSIONS) || endsWithAny(name, PYTHON_EXTENSIONS);
+    }
+
+    /**
+     * Returnerer outline av innholdet, eller innholdet uendret hvis språket ikke støttes.
+     * Hvis klammeparentesene ikke går opp (f.eks. syntaks outlineren ikke forstår), returneres også
+     * innholdet uendret, så vi aldri mister deler av API-et i stillhet.
+     */
+    public static String outline(Path path, String content) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (endsWithAny(name, BRACE_EXTENSIONS)) {
+            String outline = outlineBraceLanguage(content, endsWithAny(name, SCRIPT_EXTENSIONS));
+            return outline != null ? outline : content;
+        }
+        if (endsWithAny(name, PYTHON_EXTENSIONS)) {
+            return outlinePython(content);
+        }
+        return content;
+    }
+
+    // --- Java / Kotlin / TypeScript ---
+
+    /**
+     * Går gjennom filen og beholder alt unntatt blokker som følger en signatur (metode-, funksjons- og
+     * lambdakropper, samt initializer-blokker i en typekropp). Andre blokker (typekropper, typeliteraler,
+     * annotasjonsverdier, feltinitialiserere) beholdes, og vi går videre ned i dem.
+     *
+     * @return outline, eller null hvis klammeparentesene ikke går opp
+     */
+    private static String outlineBraceLanguage(String src, boolean regexLiterals) {
+        int n = src.length();
+        StringBuilder out = new StringBuilder(n / 2);
+        // Koden i gjeldende deklarasjon (siden forrige ; { }), med strenger tømt og uten kommentarer
+        StringBuilder decl = new StringBuilder();
+        Deque<Block> blocks = new ArrayDeque<>();
+        int parenDepth = 0;
+
+        int i = 0;
+        while (i < n) {
+            char c = src.charAt(i);
+
+            int end = -1;
+            if (c == '/' && i + 1 < n && src.charAt(i + 1) == '/') {
+                end = endOfLine(src, i);
+            } else if (c == '/' && i + 1 < n && src.charAt(i + 1) == '*') {
+                end = endOfBlockComment(src, i);
+                if (end < 0) return null;
+            }
+            if (end >= 0) {
+                out.append(src, i, end);
+                i = end;
+                continue;
+            }
+            if (c == '"' || c == '\'' || c == '`') {
+                end = endOfString(src, i, regexLiterals);
+                if (end < 0) return null;
+            } else if (c == '/' && regexLiterals && isRegexStart(src, i)) {
+                end = endOfRegex(src, i);
+            }
+            if (end >= 0) {
+                out.append(src, i, end);
+                decl.append("\"\"");
+                i = end;
+                continue;
+            }
+
+            if (c == '{') {
+                Block enclosing = blocks.peek();
+                if (IMPORT_EXPORT_LIST.matcher(decl).matches() || TYPE_ALIAS.matcher(decl).find()) {
+                    // Navnelisten i en import/export og typeliteralen i et typealias er en del av API-et,
+                    // og inneholder ingen kode, så de beholdes som de er
+                    end = skipBlock(src, i, regexLiterals);
+                    if (end < 0) return null;
+                    out.append(src, i, end);
+                    decl.append("{}");
+                    i = end;
+                } else if (parenDepth == 0 && isTypeDeclaration(decl)) {
+                    out.append(c);
+                    blocks.push(new Block(true, typeNameOf(decl), ""));
+                    decl.setLength(0);
+                    i++;
+                } else if (isBody(decl, enclosing)) {
+                    // Metodekropp, lambda, initializer e.l.: hopp over hele blokken
+                    end = skipBlock(src, i, regexLiterals);
+                    if (end < 0) return null;
+                    out.append("{ ").append(BODY_MARKER).append(" }");
+                    i = end;
+                    if (parenDepth == 0) {
+                        decl.setLength(0);
+                    }
+                } else {
+                    // Typeliteral, annotasjonsverdi eller feltinitialiserer: beholdes, men kan inneholde kropper
+                    out.append(c);
+                    blocks.push(new Block(false, null, decl.toString()));
+                    decl.setLength(0);
+                    i++;
+                }
+                continue;
+            }
+
+            out.append(c);
+            if (c == '}') {
+                if (blocks.isEmpty()) return null;
+                Block closed = blocks.pop();
+                decl.setLength(0);
+                if (!closed.typeBody) {
+                    decl.append(closed.declBefore).append("{}");
+                }
+            } else if (c == ';' && parenDepth == 0) {
+                decl.setLength(0);
+            } else {
+                if (c == '(') parenDepth++;
+                if (c == ')' && parenDepth > 0) parenDepth--;
+                decl.append(c);
+            }
+            i++;
+        }
+        return blocks.isEmpty() ? out.toString() : null;
+    }
+
+    /**
+     * Avgjør om en { åpner en typekropp: siste typenøkkelord i deklarasjonen, fulgt av et navn (eller ingenting,
+     * som i "companion object {"), uten fun/function foran eller etter, og uten en tilordning (=) eller
+     * parentes etter. Slik regnes ikke metoder som heter record(...) eller module(...) som typer.
+     */
+    private static boolean isTypeDeclaration(CharSequence decl) {
+        Matcher matcher = TYPE_KEYWORD.matcher(decl);
+        int lastStart = -1;
+        int lastEnd = -1;
+        while (matcher.find()) {
+            lastStart = matcher.start();
+            lastEnd = matcher.end();
+        }
+        if (lastEnd < 0) return false;
+
+        String before = decl.subSequence(0, lastStart).toString();
+        boolean funInterface = decl.subSequence(lastStart, lastEnd).toString().equals("interface")
+                && FUN_INTERFACE.matcher(before).find();
+        if (!funInterface && FUNCTION_KEYWORD.matcher(before).find()) return false;
+
+        String after = decl.subSequence(lastEnd, decl.length()).toString();
+        String name = after.stripLeading();
+        if (!name.isEmpty()) {
+            char first = name.charAt(0);
+            // Et navn, en streng (declare module "x") eller en supertype (Kotlin: object : Foo)
+            if (!Character.isJavaIdentifierStart(first) && first != '"' && first != ':') return false;
+        }
+        if (FUNCTION_KEYWORD.matcher(after).find()) return false;
+
+        int depth = 0;
+        for (int i = 0; i < after.length(); i++) {
+            char c = after.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')' && --depth < 0) return false;
+            else if (c == '=' && depth == 0) return false;
+        }
+        return true;
+    }
+
+    /** Navnet etter siste typenøkkelord, eller null (f.eks. "companion object"). */
+    private static String typeNameOf(CharSequence decl) {
+        Matcher matcher = TYPE_KEYWORD.matcher(decl);
+        int lastEnd = -1;
+        while (matcher.find()) {
+            lastEnd = matcher.end();
+        }
+        Matcher name = TYPE_NAME.matcher(decl);
+        return lastEnd >= 0 && name.region(lastEnd, decl.length()).lookingAt() ? name.group(1) : null;
+    }
+
+    /** "Point {" eller "public Point {" inne i record Point. */
+    private static boolean isCompactConstructor(String text, String typeName) {
+        if (!text.equals(typeName) && !text.endsWith(" " + typeName)) return false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isJavaIdentifierPart(c) && !Character.isWhitespace(c)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Avgjør om en { (som ikke er en type) er en kropp som skal erstattes med markøren: den må følge en signatur,
+     * dvs. en parameterliste (med eventuell returtype/throws), en pil (=> eller ->), fun/function, eller være en
+     * initializer-blokk eller kompakt konstruktør (Java record) i en typekropp.
+     * En { i typeposisjon (etter : &lt; , | &amp; ( [ = ?) er en literal.
+     */
+    private static boolean isBody(CharSequence decl, Block enclosing) {
+        boolean inTypeBody = enclosing == null || enclosing.typeBody;
+        String text = decl.toString().strip();
+        if (text.endsWith("=>") || text.endsWith("->")) return true;
+        if (text.isEmpty()) return inTypeBody;
+
+        char last = text.charAt(text.length() - 1);
+        if (":<,|&([=?".indexOf(last) >= 0) return false;
+        if (inTypeBody && INITIALIZER.matcher(text).matches()) return true;
+        if (enclosing != null && enclosing.typeName != null && isCompactConstructor(text, enclosing.typeName)) return true;
+        if (last == ')') return true;
+
+        // Parameterlisten på øverste nivå, fulgt av returtype eller throws
+        int depth = 0;
+        int lastClose = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                if (depth == 0) lastClose = i;
+            }
+        }
+        if (lastClose >= 0 && depth == 0 && SIGNATURE_TAIL.matcher(text.substring(lastClose + 1)).matches()) {
+            return true;
+        }
+        // Kotlin: fun f() = run { ... }
+        return FUNCTION_KEYWORD.matcher(text).find();
+    }
+
+    /**
+     * Avgjør om / på posisjon start åpner en regex-literal (og ikke er en divisjon), ut fra hva som står foran.
+     */
+    private static boolean isRegexStart(String src, int start) {
+        int i = start - 1;
+        while (i >= 0 && Character.isWhitespace(src.charAt(i))) {
+            i--;
+        }
+        if (i < 0) return true;
+        char previous = src.charAt(i);
+        if ("(,=:[!&|?{};+-*%<>~^".indexOf(previous) >= 0) return true;
+        if (!Character.isJavaIdentifierPart(previous)) return false;
+
+        int wordEnd = i + 1;
+        while (i >= 0 && Character.isJavaIdentifierPart(src.charAt(i))) {
+            i--;
+        }
+        return KEYWORDS_BEFORE_REGEX.contains(src.substring(i + 1, wordEnd));
+    }
+
+    /** Returnerer indeksen rett etter en regex-literal (med flagg), eller -1 hvis det likevel ikke var en. */
+    private static int endOfRegex(String src, int start) {
+        int n = src.length();
+        boolean inClass = false;
+        int i = start + 1;
+        while (i < n) {
+            char c = src.charAt(i);
+            if (c == '\n') {
+                return -1;
+            } else if (c == '\\') {
+                i += 2;
+                continue;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '/' && !inClass) {
+                i++;
+                while (i < n && Character.isLetter(src.charAt(i))) {
+                    i++;
+                }
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /** Returnerer indeksen rett etter } som matcher { på posisjon start, eller -1 hvis den aldri lukkes. */
+    private static int skipBlock(String src, int start, boolean regexLiterals) {
+        int n = src.length();
+        int depth = 0;
+        int i = start;
+        while (i < n) {
+            char c = src.charAt(i);
+            int end = -1;
+            if (c == '/' && i + 1 < n && src.charAt(i + 1) == '/') {
+                end = endOfLine(src, i);
+            } else if (c == '/' && i + 1 < n && src.charAt(i + 1) == '*') {
+                end = endOfBlockComment(src, i);
+                if (end < 0) return -1;
+            } else if (c == '"' || c == '\'' || c == '`') {
+                end = endOfString(src, i, regexLiterals);
+                if (end < 0) return -1;
+            } else if (c == '/' && regexLiterals && isRegexStart(src, i)) {
+                end = endOfRegex(src, i);
+            }
+            if (end >= 0) {
+                i = end;
+                continue;
+            }
+            if (c == '{') depth++;
+            if (c == '}' && --depth == 0) return i + 1;
+            i++;
+        }
+        return -1;
+    }
+
+    /** Returnerer indeksen rett etter strengen, eller -1 hvis en tekstblokk/template literal aldri avsluttes. */
+    private static int endOfString(String src, int start, boolean regexLiterals) {
+        int n = src.length();
+        if (src.startsWith("\"\"\"", start)) {
+            // Java text block / Kotlin raw string
+            int end = src.indexOf("\"\"\"", start + 3);
+            return end < 0 ? -1 : end + 3;
+        }
+        char quote = src.charAt(start);
+        int i = start + 1;
+        while (i < n) {
+            char c = src.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else if (quote == '`' && c == '$' && i + 1 < n && src.charAt(i + 1) == '{') {
+                // Template literal: ${ ... } kan inneholde egne klammeparenteser og strenger
+                i = skipBlock(src, i + 1, regexLiterals);
+                if (i < 0) return -1;
+            } else if (quote != '`' && c == '\n') {
+                // Uavsluttet streng (eller en ' som ikke var en streng) – stopp ved linjeslutt
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return quote == '`' ? -1 : n;
+    }
+
+    private static int endOfLine(String src, int start) {
+        int end = src.indexOf('\n', start);
+        return end < 0 ? src.length() : end;
+    }
+
+    private static int endOfBlockComment(String src, int start) {
+        int end = src.indexOf("*/", start + 2);
+        return end < 0 ? -1 : end + 2;
+    }
+
+    // --- Python ---
+
+    /** Tilstand som følger med fra linje til linje (flerlinjes strenger og åpne parenteser). */
+    private static final class PythonState {
+        private char tripleQuote;
+        private int bracketDepth;
+        private char lastCodeChar;
+    }
+
+    private static String outlinePython(String src) {
+        String[] lines = src.split("\n", -1);
+        List<String> out = new ArrayList<>(lines.length / 2);
+        PythonState state = new PythonState();
+
+        int skipIndent = -1;      // >= 0: vi hopper over en def-kropp med dypere innrykk enn dette
+        boolean skippedBlank = false;
+        // Kommentarer med lavere innrykk inne i en kropp avslutter den ikke, men kan også høre til neste def,
+        // så de holdes tilbake til vi vet om kroppen fortsetter
+        List<String> pendingComments = new ArrayList<>();
+        boolean blankBeforeComments = false;
+        boolean inDefHeader = false;
+        int defIndent = 0;
+
+        for (String line : lines) {
+            boolean continuation = state.tripleQuote != 0 || state.bracketDepth > 0;
+            boolean blank = line.isBlank();
+            int indent = indentOf(line);
+
+            if (skipIndent >= 0) {
+                boolean comment = !continuation && line.stripLeading().startsWith("#");
+                if (continuation || blank || indent > skipIndent || comment) {
+                    scanPythonLine(line, state);
+                    if (comment && indent <= skipIndent) {
+                        if (pendingComments.isEmpty()) {
+                            blankBeforeComments = skippedBlank;
+                        }
+                        pendingComments.add(line);
+                    } else if (blank && !continuation && !pendingComments.isEmpty()) {
+                        pendingComments.add(line);
+                    } else {
+                        pendingComments.clear();
+                        skippedBlank = blank && !continuation;
+                    }
+                    continue;
+                }
+                skipIndent = -1;
+                // Behold én tom linje mellom metoder, slik at outline er lett å lese
+                if (pendingComments.isEmpty() ? skippedBlank : blankBeforeComments) {
+                    out.add("");
+                }
+                out.addAll(pendingComments);
+                pendingComments.clear();
+            }
+
+            String stripped = line.stripLeading();
+            if (!continuation && !inDefHeader
+                    && (stripped.startsWith("def ") || stripped.startsWith("async def "))) {
+                inDefHeader = true;
+                defIndent = indent;
+            }
+
+            scanPythonLine(line, state);
+            out.add(line);
+
+            if (inDefHeader && state.bracketDepth == 0 && state.tripleQuote == 0) {
+                inDefHeader = false;
+                // Kun når kroppen starter på neste linje; "def f(): return 1" beholdes som den er
+                if (state.lastCodeChar == ':') {
+                    out.add(" ".repeat(defIndent + 4) + PYTHON_BODY_MARKER);
+                    skipIndent = defIndent;
+                }
+            }
+        }
+        return String.join("\n", out);
+    }
+
+    private static void scanPythonLine(String line, PythonState state) {
+        state.lastCodeChar = 0;
+        int n = line.length();
+        int i = 0;
+        while (i < n) {
+            char c = line.charAt(i);
+            if (state.tripleQuote != 0) {
+                if (c == '\\') {
+                    i += 2;
+                    continue;
+                }
+                if (c == state.tripleQuote && line.startsWith(String.valueOf(c).repeat(3), i)) {
+                    state.tripleQuote = 0;
+                    state.lastCodeChar = c;
+                    i += 3;
+                    continue;
+                }
+                i++;
+                continue;
+            }
+            if (c == '#') {
+                return;
+            }
+            if (c == '"' || c == '\'') {
+                if (line.startsWith(String.valueOf(c).repeat(3), i)) {
+                    state.tripleQuote = c;
+                    i += 3;
+                    continue;
+                }
+                i++;
+                while (i < n && line.charAt(i) != c) {
+                    i += line.charAt(i) == '\\' ? 2 : 1;
+                }
+                state.lastCodeChar = c;
+                i++;
+                continue;
+            }
+            if (c == '(' || c == '[' || c == '{') state.bracketDepth++;
+            if ((c == ')' || c == ']' || c == '}') && state.bracketDepth > 0) state.bracketDepth--;
+            if (!Character.isWhitespace(c)) state.lastCodeChar = c;
+            i++;
+        }
+    }
+
+    private static int indentOf(String line) {
+        int indent = 0;
+        while (indent < line.length() && (line.charAt(indent) == ' ' || line.charAt(indent) == '\t')) {
+            indent++;
+        }
+        return indent;
+    }
+
+    private static boolean endsWithAny(String name, List<String> extensions) {
+        for (String ext : extensions) {
+            if (name.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
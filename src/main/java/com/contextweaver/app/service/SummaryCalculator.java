@@ -0,0 +1,101 @@
+package com.contextweaver.app.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Regner ut sammendraget for valgte filer. Kjøres i bakgrunnen, siden outline-estimatet og duplikatsøket
+ * må lese filene. Outline-størrelser og hasher caches på sti/størrelse/mtime, så bare endrede filer leses på nytt.
+ */
+public class SummaryCalculator {
+
+    private static final class OutlineSize {
+        private final long size;
+        private final long lastModified;
+        private final long outlinedBytes;
+
+        private OutlineSize(long size, long lastModified, long outlinedBytes) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.outlinedBytes = outlinedBytes;
+        }
+    }
+
+    private final Map<Path, OutlineSize> outlineSizes = new ConcurrentHashMap<>();
+
+    private final DuplicateFinder duplicateFinder;
+
+    public SummaryCalculator() {
+        this(new DuplicateFinder());
+    }
+
+    public SummaryCalculator(DuplicateFinder duplicateFinder) {
+        this.duplicateFinder = duplicateFinder;
+    }
+
+    /**
+     * @param deduplicate regn ut hvor mye duplikatsjekken sparer (hasher filene)
+     * @param cancelled   sjekkes under duplikatsøket; kaster CancellationException hvis den blir true
+     */
+    public SelectionSummary calculate(List<Path> files, Predicate<Path> outline, boolean deduplicate, BooleanSupplier cancelled) {
+        DuplicateSet duplicates = deduplicate ? duplicateFinder.find(files, outline, cancelled) : DuplicateSet.EMPTY;
+        long totalBytes = 0;
+        long estimatedBytes = 0;
+        long duplicateBytes = 0;
+        int outlinedFiles = 0;
+
+        for (Path path : files) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                totalBytes += attrs.size();
+                long bytes;
+                if (outline.test(path)) {
+                    bytes = outlinedSizeOrFull(path, attrs);
+                    outlinedFiles++;
+                } else {
+                    bytes = attrs.size();
+                }
+                if (duplicates.isDuplicate(path)) {
+                    duplicateBytes += bytes;
+                } else {
+                    estimatedBytes += bytes;
+                }
+            } catch (IOException e) {
+                // Ignorer feil her
+            }
+        }
+        return new SelectionSummary(files.size(), totalBytes, outlinedFiles, estimatedBytes,
+                duplicates.getDuplicateCount(), duplicateBytes);
+    }
+
+    public void clear() {
+        outlineSizes.clear();
+        duplicateFinder.clear();
+    }
+
+    private long outlinedSizeOrFull(Path path, BasicFileAttributes attrs) {
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        OutlineSize cached = outlineSizes.get(path);
+        if (cached != null && cached.size == attrs.size() && cached.lastModified == lastModified) {
+            return cached.outlinedBytes;
+        }
+        String outlined;
+        try {
+            outlined = SourceOutliner.outline(path, Files.readString(path));
+        } catch (IOException e) {
+            // Kan ikke leses som tekst – regn med full størrelse
+            return attrs.size();
+        }
+        long bytes = outlined.getBytes(StandardCharsets.UTF_8).length;
+        outlineSizes.put(path, new OutlineSize(attrs.size(), lastModified, bytes));
+        return bytes;
+    }
+}
@@ -0,0 +1,68 @@
+package com.contextweaver.app.service;
+
+import com.contextweaver.app.service.format.OutputFormat;
+import com.contextweaver.app.service.format.OutputFormats;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Innstillinger for én veving (format, valgfri byte-offset-indeks, outline og duplikater).
+ */
+public class WeaveOptions {
+    private OutputFormat format = OutputFormats.defaultFormat();
+    private boolean includeIndex = false;
+    private boolean outlineAll = false;
+    private Set<Path> outlinedFiles = new HashSet<>();
+    private boolean deduplicate = false;
+
+    public OutputFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(OutputFormat format) {
+        this.format = format;
+    }
+
+    public boolean isIncludeIndex() {
+        return includeIndex;
+    }
+
+    public void setIncludeIndex(boolean includeIndex) {
+        this.includeIndex = includeIndex;
+    }
+
+    public boolean isOutlineAll() {
+        return outlineAll;
+    }
+
+    /** Outline for alle støttede filer, ikke bare de som er merket enkeltvis. */
+    public void setOutlineAll(boolean outlineAll) {
+        this.outlineAll = outlineAll;
+    }
+
+    public Set<Path> getOutlinedFiles() {
+        return outlinedFiles;
+    }
+
+    public void setOutlinedFiles(Set<Path> outlinedFiles) {
+        this.outlinedFiles = new HashSet<>(outlinedFiles);
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /** Filer med identisk innhold som en tidligere fil skrives som en referanse til den. */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * True hvis filen skal veves som outline (kun signaturer).
+     */
+    public boolean shouldOutline(Path path) {
+        return (outlineAll || outlinedFiles.contains(path)) && SourceOutliner.supports(path);
+    }
+}
@@ -0,0 +1,49 @@
+package com.contextweaver.app.service;
+
+/**
+ * Oppsummering av én veving: hvor mye som ble gjenbrukt fra cachen og hvordan filen ble skrevet.
+ */
+public class WeaveResult {
+    private final int fileCount;
+    private final int reusedSegments;
+    private final int renderedSegments;
+    private final int duplicateSegments;
+    private final long bytesWritten;
+    private final boolean patchedInPlace;
+
+    public WeaveResult(int fileCount, int reusedSegments, int renderedSegments, int duplicateSegments,
+                       long bytesWritten, boolean patchedInPlace) {
+        this.fileCount = fileCount;
+        this.reusedSegments = reusedSegments;
+        this.renderedSegments = renderedSegments;
+        this.duplicateSegments = duplicateSegments;
+        this.bytesWritten = bytesWritten;
+        this.patchedInPlace = patchedInPlace;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public int getReusedSegments() {
+        return reusedSegments;
+    }
+
+    /** Filer som ble lest fra disk og rendret på nytt (ikke referanser til duplikater). */
+    public int getRenderedSegments() {
+        return renderedSegments;
+    }
+
+    /** Filer som ble skrevet som referanse til en identisk fil. */
+    public int getDuplicateSegments() {
+        return duplicateSegments;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public boolean isPatchedInPlace() {
+        return patchedInPlace;
+    }
+}
@@ -0,0 +1,337 @@
+package com.contextweaver.app.service;
+
+import com.contextweaver.app.model.Workspace;
+import com.contextweaver.app.service.format.IndexEntry;
+import com.contextweaver.app.service.format.OutputFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Vever valgte filer sammen til én kontekstfil i valgt OutputFormat.
+ * - Dokumentet strømmes i én passering: segmentene skrives fortløpende og holdes ikke samlet i minnet.
+ * - Hvert filsegment (header + innhold + footer) caches på sti/størrelse/mtime, så kun endrede filer leses på nytt.
+ * - Segmentene skrives med scatter/gather-skriving i batcher.
+ * - Med duplikatsjekk skrives filer med identisk innhold som en kort referanse til første forekomst.
+ * - Hvis vi vever til samme fil, patches segmenter som ligger på samme plass og har samme lengde som sist.
+ *   Først ved første avvik går vi over til vanlig sekvensiell skriving (alt før avviket er allerede riktig på disk).
+ * - Flere vevinger kan kjøre samtidig (daemonen deler én Weaver mellom klientene), så lenge de skriver til ulike filer.
+ */
+public class Weaver {
+
+    /** Kalles etter hver fil, slik at GUI-et kan vise fremdrift. */
+    public interface ProgressListener {
+        void onProgress(long done, long total);
+    }
+
+    // Antall buffere per gather-kall (holder oss godt under IOV_MAX på vanlige OS)
+    private static final int GATHER_BATCH_SIZE = 256;
+
+    // Maks minnebruk for cachede segmenter
+    private static final long SEGMENT_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+
+    private final SegmentCache segmentCache = new SegmentCache(SEGMENT_CACHE_MAX_BYTES);
+
+    // GUI-et vever ett utvalg om gangen og rydder cachen ned til det; daemonen har flere klienter med hvert sitt utvalg
+    private final boolean pruneCacheToSelection;
+
+    // Deles gjerne med SummaryCalculator, slik at hashene bare regnes ut én gang
+    private final DuplicateFinder duplicateFinder;
+
+    // Layouten til sist skrevne fil, brukes for å avgjøre om vi kan patche på plass
+    private final AtomicReference<OutputLayout> lastLayout = new AtomicReference<>();
+
+    private static final class OutputLayout {
+        private final Path outputFile;
+        private final byte[] header;
+        private final List<Path> paths;
+        private final int[] lengths;
+        private final long fileSize;
+        private final FileTime lastModified;
+
+        private OutputLayout(Path outputFile, byte[] header, List<Path> paths, int[] lengths,
+                             long fileSize, FileTime lastModified) {
+            this.outputFile = outputFile;
+            this.header = header;
+            this.paths = paths;
+            this.lengths = lengths;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+        }
+
+        private boolean sameSlot(int i, Path path, int length) {
+            return i < paths.size() && paths.get(i).equals(path) && lengths[i] == length;
+        }
+    }
+
+    /**
+     * Skriver segmenter enten på plass (posisjonelt) eller sekvensielt med gather-skriving.
+     */
+    private static final class SegmentWriter {
+        private final FileChannel channel;
+        private final List<ByteBuffer> pending = new ArrayList<>();
+        private boolean inPlace;
+        private long position;
+        private long bytesWritten;
+
+        private SegmentWriter(FileChannel channel, boolean inPlace) throws IOException {
+            this.channel = channel;
+            this.inPlace = inPlace;
+            if (!inPlace) {
+                channel.truncate(0);
+            }
+        }
+
+        /**
+         * @param sameSlot  segmentet har samme sti og lengde på samme plass som i forrige fil
+         * @param unchanged innholdet er garantert identisk med det som allerede ligger på disk
+         */
+        private void write(byte[] bytes, boolean sameSlot, boolean unchanged) throws IOException {
+            if (inPlace && sameSlot) {
+                if (!unchanged) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    long at = position;
+                    while (buffer.hasRemaining()) {
+                        at += channel.write(buffer, at);
+                    }
+                    bytesWritten += bytes.length;
+                }
+                position += bytes.length;
+                return;
+            }
+            if (inPlace) {
+                // Første avvik: resten skrives sekvensielt herfra
+                inPlace = false;
+                channel.position(position);
+            }
+            append(bytes);
+        }
+
+        /** Avslutningen (indeks o.l.) skrives alltid, og avgjør ikke om filen regnes som patchet. */
+        private void writeTail(byte[] bytes) throws IOException {
+            if (inPlace) {
+                channel.position(position);
+            }
+            append(bytes);
+        }
+
+        private void append(byte[] bytes) throws IOException {
+            pending.add(ByteBuffer.wrap(bytes));
+            position += bytes.length;
+            if (pending.size() >= GATHER_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (pending.isEmpty()) return;
+            ByteBuffer[] buffers = pending.toArray(new ByteBuffer[0]);
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            // Et gather-kall kan skrive mindre enn alt, så vi fortsetter til alle buffere er tomme
+            while (remaining > 0) {
+                long written = channel.write(buffers);
+                remaining -= written;
+                bytesWritten += written;
+            }
+            pending.clear();
+        }
+
+        private void finish() throws IOException {
+            flush();
+            channel.truncate(position);
+        }
+    }
+
+    public Weaver() {
+        this(new DuplicateFinder());
+    }
+
+    public Weaver(DuplicateFinder duplicateFinder) {
+        this(duplicateFinder, true);
+    }
+
+    /**
+     * @param pruneCacheToSelection true: hver veving kaster cachede segmenter for filer som ikke er med.
+     *                              false: cachen beholder alt og kaster minst nylig brukte segmenter ved byte-taket.
+     */
+    public Weaver(DuplicateFinder duplicateFinder, boolean pruneCacheToSelection) {
+        this.duplicateFinder = duplicateFinder;
+        this.pruneCacheToSelection = pruneCacheToSelection;
+    }
+
+    public WeaveResult weave(Workspace workspace, List<Path> requestedFiles, Path outputFile, WeaveOptions options,
+                                          ProgressListener progress, BooleanSupplier cancelled) throws IOException {
+        // Samme fil to ganger ville gitt to like segmenter (eller med dedup: bare referanser til seg selv)
+        List<Path> files = new ArrayList<>(new LinkedHashSet<>(requestedFiles));
+        Path target = outputFile.toAbsolutePath().normalize();
+        // Output-filen kan være valgt selv (f.eks. .txt i samme mappe); den avkortes/patches under skriving,
+        // så den ville blitt vevd inn som en halv eller gammel kopi av seg selv
+        files.removeIf(path -> isSameFile(path, target));
+        OutputFormat format = options.getFormat();
+        byte[] header = utf8(format.renderHeader(workspace.getDisplayName(), files.size()));
+
+        // Rydd før vi fyller på, slik at byte-taket brukes på filene i denne vevingen
+        if (pruneCacheToSelection) {
+            segmentCache.retainOnly(files);
+        }
+
+        DuplicateSet duplicates = options.isDeduplicate()
+                ? duplicateFinder.find(files, options::shouldOutline, cancelled)
+                : DuplicateSet.EMPTY;
+
+        OutputLayout last = lastLayout.get();
+        OutputLayout previous = untouchedLayout(last, target);
+        // Nullstilles før skriving, slik at en feil midt i ikke etterlater en layout som ikke stemmer med disken
+        if (last != null && last.outputFile.equals(target)) {
+            lastLayout.compareAndSet(last, null);
+        }
+
+        int[] lengths = new int[files.size()];
+        List<IndexEntry> index = options.isIncludeIndex() ? new ArrayList<>(files.size()) : null;
+        int reused = 0;
+        int rendered = 0;
+        int duplicateCount = 0;
+        boolean patched;
+        long bytesWritten;
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            SegmentWriter writer = new SegmentWriter(channel, previous != null);
+            writer.write(header,
+                    previous != null && previous.header.length == header.length,
+                    previous != null && Arrays.equals(previous.header, header));
+
+            long total = files.size();
+            for (int i = 0; i < files.size(); i++) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Veving avbrutt");
+                }
+                Path path = files.get(i);
+                // Rot-kvalifisert ved flere røtter
+                String relativePath = workspace.relativePathOf(path);
+                boolean outline = options.shouldOutline(path);
+                Path original = duplicates.getOriginal(path);
+                String originalPath = original != null ? workspace.relativePathOf(original) : null;
+                String renderKey = original != null
+                        ? format.getId() + ":duplicate:" + originalPath + ":" + relativePath
+                        : format.getId() + (outline ? ":outline:" : ":") + relativePath;
+                if (original != null) {
+                    duplicateCount++;
+                }
+
+                byte[] segment = null;
+                BasicFileAttributes attrs = null;
+                try {
+                    attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    segment = segmentCache.get(path, attrs.size(), attrs.lastModifiedTime().toMillis(), renderKey);
+                } catch (IOException e) {
+                    // Filen er borte eller utilgjengelig – lesingen under gir en feilmelding i output
+                }
+
+                boolean fromCache = segment != null;
+                if (fromCache) {
+                    reused++;
+                } else if (original != null) {
+                    // Innholdet står allerede i dokumentet – skriv bare en referanse (filen trenger ikke leses)
+                    segment = utf8(format.renderDuplicate(relativePath, originalPath));
+                    if (attrs != null) {
+                        segmentCache.put(path, attrs.size(), attrs.lastModifiedTime().toMillis(), renderKey, segment);
+                    }
+                } else {
+                    rendered++;
+                    boolean readable = true;
+                    String content;
+                    try {
+                        content = Files.readString(path);
+                        if (outline) {
+                            content = SourceOutliner.outline(path, content);
+                        }
+                    } catch (IOException e) {
+                        content = "!!! ERROR READING FILE: " + e.getMessage() + " !!!";
+                        readable = false;
+                    }
+                    segment = utf8(format.renderFile(relativePath, content));
+                    // Lesefeil skrives inn i output (som før), men caches ikke
+                    if (attrs != null && readable) {
+                        segmentCache.put(path, attrs.size(), attrs.lastModifiedTime().toMillis(), renderKey, segment);
+                    }
+                }
+
+                if (index != null) {
+                    index.add(new IndexEntry(relativePath, writer.position, segment.length));
+                }
+                lengths[i] = segment.length;
+                writer.write(segment, previous != null && previous.sameSlot(i, path, segment.length), fromCache);
+                progress.onProgress(i + 1, total);
+            }
+
+            patched = writer.inPlace && previous.paths.size() == files.size();
+            writer.writeTail(utf8(format.renderEnd(files.size(), index, writer.position)));
+            writer.finish();
+            bytesWritten = writer.bytesWritten;
+        }
+
+        lastLayout.set(new OutputLayout(target, header, new ArrayList<>(files), lengths,
+                Files.size(target), Files.getLastModifiedTime(target)));
+        return new WeaveResult(files.size(), reused, rendered, duplicateCount, bytesWritten, patched);
+    }
+
+    private static boolean isSameFile(Path path, Path target) {
+        Path normalized = path.toAbsolutePath().normalize();
+        if (normalized.equals(target)) return true;
+        // Symlenker / store og små bokstaver: kun verdt et filsystemkall når filnavnet kan være det samme
+        if (normalized.getFileName() == null
+                || !normalized.getFileName().toString().equalsIgnoreCase(String.valueOf(target.getFileName()))) {
+            return false;
+        }
+        try {
+            return Files.exists(target) && Files.isSameFile(normalized, target);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tømmer cachen, f.eks. når brukeren bytter prosjekt.
+     */
+    public void clearCache() {
+        segmentCache.clear();
+        lastLayout.set(null);
+    }
+
+    /**
+     * Forrige layout kan kun brukes hvis vi skriver til samme fil og filen er urørt siden vi skrev den sist.
+     */
+    private OutputLayout untouchedLayout(OutputLayout previous, Path target) {
+        if (previous == null || !previous.outputFile.equals(target)) return null;
+        try {
+            if (Files.size(target) == previous.fileSize
+                    && Files.getLastModifiedTime(target).equals(previous.lastModified)) {
+                return previous;
+            }
+        } catch (IOException e) {
+            // Filen finnes ikke lenger – skriv alt på nytt
+        }
+        return null;
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,28 @@
+package com.contextweaver.app.service.format;
+
+/**
+ * Én linje i byte-offset-indeksen: hvor et filsegment starter i output og hvor langt det er.
+ */
+public class IndexEntry {
+    private final String path;
+    private final long offset;
+    private final long length;
+
+    public IndexEntry(String path, long offset, long length) {
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,100 @@
+package com.contextweaver.app.service.format;
+
+import java.util.List;
+
+/**
+ * JSON Lines: én JSON-linje for header, én per fil og (valgfritt) én for indeksen.
+ * Siste linje er alltid {"type":"end",...}, med offset til indekslinjen når den finnes.
+ */
+public class JsonlFormat implements OutputFormat {
+
+    @Override
+    public String getId() {
+        return "jsonl";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "JSON Lines (.jsonl)";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".jsonl";
+    }
+
+    @Override
+    public String renderHeader(String projectName, int fileCount) {
+        return "{\"type\":\"header\",\"generator\":\"ContextWeaver\",\"project\":" + quote(projectName) +
+                ",\"files\":" + fileCount + "}\n";
+    }
+
+    @Override
+    public String renderFile(String relativePath, String content) {
+        StringBuilder sb = new StringBuilder(content.length() + relativePath.length() + 48);
+        sb.append("{\"type\":\"file\",\"path\":");
+        appendQuoted(sb, relativePath);
+        sb.append(",\"content\":");
+        appendQuoted(sb, content);
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String renderDuplicate(String relativePath, String originalPath) {
+        StringBuilder sb = new StringBuilder(relativePath.length() + originalPath.length() + 48);
+        sb.append("{\"type\":\"file\",\"path\":");
+        appendQuoted(sb, relativePath);
+        sb.append(",\"duplicateOf\":");
+        appendQuoted(sb, originalPath);
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String renderEnd(int fileCount, List<IndexEntry> index, long startOffset) {
+        if (index == null) {
+            return "{\"type\":\"end\",\"files\":" + fileCount + "}\n";
+        }
+        StringBuilder sb = new StringBuilder("{\"type\":\"index\",\"entries\":[");
+        for (int i = 0; i < index.size(); i++) {
+            IndexEntry entry = index.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"path\":");
+            appendQuoted(sb, entry.getPath());
+            sb.append(",\"offset\":").append(entry.getOffset())
+                    .append(",\"length\":").append(entry.getLength()).append('}');
+        }
+        sb.append("]}\n");
+        sb.append("{\"type\":\"end\",\"files\":").append(fileCount)
+                .append(",\"indexOffset\":").append(startOffset).append("}\n");
+        return sb.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        appendQuoted(sb, value);
+        return sb.toString();
+    }
+
+    private static void appendQuoted(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
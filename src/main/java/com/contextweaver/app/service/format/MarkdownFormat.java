@@ -0,0 +1,119 @@
+package com.contextweaver.app.service.format;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Markdown med én overskrift og én fenced code block per fil.
+ * Fence-lengden tilpasses innholdet, slik at ``` inne i filen ikke avslutter blokken.
+ */
+public class MarkdownFormat implements OutputFormat {
+
+    private static final Map<String, String> LANGUAGES = Map.ofEntries(
+            Map.entry("java", "java"), Map.entry("kt", "kotlin"), Map.entry("kts", "kotlin"),
+            Map.entry("groovy", "groovy"), Map.entry("gradle", "groovy"),
+            Map.entry("js", "javascript"), Map.entry("jsx", "jsx"), Map.entry("mjs", "javascript"), Map.entry("cjs", "javascript"),
+            Map.entry("ts", "typescript"), Map.entry("tsx", "tsx"),
+            Map.entry("py", "python"), Map.entry("pyw", "python"),
+            Map.entry("json", "json"), Map.entry("xml", "xml"), Map.entry("html", "html"), Map.entry("htm", "html"),
+            Map.entry("css", "css"), Map.entry("scss", "scss"), Map.entry("sass", "sass"), Map.entry("less", "less"),
+            Map.entry("yml", "yaml"), Map.entry("yaml", "yaml"), Map.entry("toml", "toml"), Map.entry("ini", "ini"),
+            Map.entry("properties", "properties"), Map.entry("md", "markdown"), Map.entry("sql", "sql"),
+            Map.entry("sh", "bash"), Map.entry("bash", "bash"), Map.entry("zsh", "zsh"), Map.entry("ps1", "powershell"),
+            Map.entry("bat", "batch"), Map.entry("dart", "dart"), Map.entry("cs", "csharp"), Map.entry("fs", "fsharp"),
+            Map.entry("c", "c"), Map.entry("h", "c"), Map.entry("cpp", "cpp"), Map.entry("cc", "cpp"),
+            Map.entry("cxx", "cpp"), Map.entry("hpp", "cpp"), Map.entry("hh", "cpp"),
+            Map.entry("rs", "rust"), Map.entry("go", "go"), Map.entry("php", "php"), Map.entry("rb", "ruby"),
+            Map.entry("swift", "swift"), Map.entry("m", "objectivec"), Map.entry("mm", "objectivec")
+    );
+
+    @Override
+    public String getId() {
+        return "markdown";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Markdown (.md)";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".md";
+    }
+
+    @Override
+    public String renderHeader(String projectName, int fileCount) {
+        return "# Context woven by ContextWeaver\n\n" +
+                "- Project: " + projectName + "\n" +
+                "- Files included: " + fileCount + "\n\n";
+    }
+
+    @Override
+    public String renderFile(String relativePath, String content) {
+        String fence = "`".repeat(Math.max(3, longestBacktickRun(content) + 1));
+        StringBuilder sb = new StringBuilder(content.length() + relativePath.length() + 32);
+        sb.append("## ").append(relativePath).append("\n\n");
+        sb.append(fence).append(languageOf(relativePath)).append('\n');
+        sb.append(content);
+        if (!content.endsWith("\n")) {
+            sb.append('\n');
+        }
+        sb.append(fence).append("\n\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String renderDuplicate(String relativePath, String originalPath) {
+        return "## " + relativePath + "\n\n_Identical to `" + originalPath + "`._\n\n";
+    }
+
+    /**
+     * Indeksen legges i en HTML-kommentar, slik at den ikke vises når Markdown rendres.
+     * "--" kan ikke stå i en kommentar, så stiene prosent-kodes: "%" blir "%25" og "--" blir "%2D%2D".
+     * Den opprinnelige stien fås tilbake med vanlig prosent-dekoding.
+     */
+    @Override
+    public String renderEnd(int fileCount, List<IndexEntry> index, long startOffset) {
+        if (index == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("<!-- INDEX (offset length percent-encoded-path)\n");
+        for (IndexEntry entry : index) {
+            sb.append(entry.getOffset()).append(' ')
+                    .append(entry.getLength()).append(' ')
+                    .append(encodeIndexPath(entry.getPath())).append('\n');
+        }
+        sb.append("-->\n");
+        sb.append(String.format("<!-- INDEX OFFSET: %020d -->\n", startOffset));
+        return sb.toString();
+    }
+
+    private static String encodeIndexPath(String path) {
+        return path.replace("%", "%25").replace("--", "%2D%2D");
+    }
+
+    private static String languageOf(String relativePath) {
+        String name = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return name.equals("Dockerfile") ? "dockerfile" : name.equals("Makefile") ? "makefile" : "";
+        }
+        return LANGUAGES.getOrDefault(name.substring(dot + 1).toLowerCase(Locale.ROOT), "");
+    }
+
+    private static int longestBacktickRun(String content) {
+        int longest = 0;
+        int current = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '`') {
+                current++;
+                longest = Math.max(longest, current);
+            } else {
+                current = 0;
+            }
+        }
+        return longest;
+    }
+}
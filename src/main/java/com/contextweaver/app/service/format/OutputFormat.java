@@ -0,0 +1,45 @@
+package com.contextweaver.app.service.format;
+
+import java.util.List;
+
+/**
+ * SPI for utdataformater. Weaver strømmer dokumentet i én passering:
+ * header, ett segment per fil, og til slutt en avslutning (med valgfri byte-offset-indeks).
+ * Ingen metoder får se hele dokumentet, så formatene kan ikke buffre alt i minnet.
+ *
+ * Ekstra formater kan registreres via java.util.ServiceLoader
+ * (META-INF/services/com.contextweaver.app.service.format.OutputFormat).
+ */
+public interface OutputFormat {
+
+    /** Stabil id, brukes bl.a. i cache-nøkler (f.eks. "text", "markdown"). */
+    String getId();
+
+    /** Navn som vises i GUI-et. */
+    String getDisplayName();
+
+    /** Filendelse inkludert punktum, f.eks. ".md". */
+    String getFileExtension();
+
+    String renderHeader(String projectName, int fileCount);
+
+    String renderFile(String relativePath, String content);
+
+    /**
+     * En fil med identisk innhold som en fil tidligere i dokumentet. Skrives som en kort referanse
+     * i stedet for hele innholdet. Formater som ikke overstyrer denne, får en vanlig fil med referansen som innhold.
+     *
+     * @param originalPath relativ sti til filen der innholdet står
+     */
+    default String renderDuplicate(String relativePath, String originalPath) {
+        return renderFile(relativePath, "[identical to " + originalPath + "]");
+    }
+
+    /**
+     * Alt som kommer etter siste fil.
+     *
+     * @param index       byte-offset for hvert filsegment, eller null hvis indeks ikke er ønsket
+     * @param startOffset byte-posisjonen der avslutningen starter (= der indeksen begynner)
+     */
+    String renderEnd(int fileCount, List<IndexEntry> index, long startOffset);
+}
@@ -0,0 +1,56 @@
+package com.contextweaver.app.service.format;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Oversikt over tilgjengelige utdataformater: de innebygde først, deretter eventuelle
+ * formater som er registrert via ServiceLoader.
+ */
+public final class OutputFormats {
+
+    private static final List<OutputFormat> ALL = loadAll();
+
+    private OutputFormats() {
+    }
+
+    public static List<OutputFormat> all() {
+        return ALL;
+    }
+
+    public static OutputFormat defaultFormat() {
+        return ALL.get(0);
+    }
+
+    /**
+     * Finner format på id (uavhengig av store/små bokstaver), eller null hvis det ikke finnes.
+     */
+    public static OutputFormat byId(String id) {
+        return byId(ALL, id);
+    }
+
+    private static List<OutputFormat> loadAll() {
+        List<OutputFormat> formats = new ArrayList<>();
+        formats.add(new PlainTextFormat());
+        formats.add(new MarkdownFormat());
+        formats.add(new XmlFormat());
+        formats.add(new JsonlFormat());
+        for (OutputFormat format : ServiceLoader.load(OutputFormat.class)) {
+            if (byId(formats, format.getId()) == null) {
+                formats.add(format);
+            }
+        }
+        return Collections.unmodifiableList(formats);
+    }
+
+    private static OutputFormat byId(List<OutputFormat> formats, String id) {
+        for (OutputFormat format : formats) {
+            if (format.getId().equalsIgnoreCase(id)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.contextweaver.app.service.format;
+
+import java.util.List;
+
+/**
+ * Det opprinnelige ContextWeaver-formatet: ren tekst med START/END-markører rundt hver fil.
+ * Uten indeks er output byte-for-byte som før.
+ */
+public class PlainTextFormat implements OutputFormat {
+
+    @Override
+    public String getId() {
+        return "text";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Ren tekst (.txt)";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".txt";
+    }
+
+    @Override
+    public String renderHeader(String projectName, int fileCount) {
+        return "/*\n--- Context woven by ContextWeaver ---\n\n" +
+                "Project: " + projectName + "\n" +
+                "Files included: " + fileCount + "\n" +
+                "*/\n\n\n";
+    }
+
+    @Override
+    public String renderFile(String relativePath, String content) {
+        StringBuilder sb = new StringBuilder(content.length() + 2 * relativePath.length() + 64);
+        sb.append("--- START OF FILE: ").append(relativePath).append(" ---\n\n");
+        sb.append(content);
+        sb.append("\n\n--- END OF FILE: ").append(relativePath).append(" ---\n\n\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String renderDuplicate(String relativePath, String originalPath) {
+        return "--- FILE: " + relativePath + " IS IDENTICAL TO: " + originalPath + " ---\n\n\n";
+    }
+
+    /**
+     * Indeksen avsluttes med en linje med fast bredde, slik at verktøy kan lese de siste
+     * bytene av filen og hoppe rett til indeksen.
+     */
+    @Override
+    public String renderEnd(int fileCount, List<IndexEntry> index, long startOffset) {
+        if (index == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("--- INDEX (offset length path) ---\n");
+        for (IndexEntry entry : index) {
+            sb.append(entry.getOffset()).append(' ')
+                    .append(entry.getLength()).append(' ')
+                    .append(entry.getPath()).append('\n');
+        }
+        sb.append("--- END OF INDEX ---\n");
+        sb.append(String.format("--- INDEX OFFSET: %020d ---\n", startOffset));
+        return sb.toString();
+    }
+}
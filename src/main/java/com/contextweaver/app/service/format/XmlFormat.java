@@ -0,0 +1,98 @@
+package com.contextweaver.app.service.format;
+
+import java.util.List;
+
+/**
+ * XML med ett &lt;file&gt;-element per fil. Innholdet ligger i CDATA, så koden kan leses uten escaping.
+ * Tegn som ikke er lov i XML 1.0 (f.eks. form feed i C-filer) byttes ut med U+FFFD.
+ */
+public class XmlFormat implements OutputFormat {
+
+    @Override
+    public String getId() {
+        return "xml";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "XML-tagger (.xml)";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".xml";
+    }
+
+    @Override
+    public String renderHeader(String projectName, int fileCount) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<context generator=\"ContextWeaver\" project=\"" + escapeAttribute(projectName) +
+                "\" files=\"" + fileCount + "\">\n";
+    }
+
+    @Override
+    public String renderFile(String relativePath, String content) {
+        StringBuilder sb = new StringBuilder(content.length() + relativePath.length() + 48);
+        sb.append("<file path=\"").append(escapeAttribute(relativePath)).append("\"><![CDATA[");
+        // "]]>" kan ikke stå inne i CDATA, så vi deler opp seksjonen der den forekommer
+        sb.append(replaceInvalidCharacters(content).replace("]]>", "]]]]><![CDATA[>"));
+        sb.append("]]></file>\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String renderDuplicate(String relativePath, String originalPath) {
+        return "<file path=\"" + escapeAttribute(relativePath) + "\" duplicateOf=\"" + escapeAttribute(originalPath) + "\"/>\n";
+    }
+
+    /**
+     * Indeksen ligger inne i rotelementet; offset til indeksen står i en kommentar helt til slutt.
+     */
+    @Override
+    public String renderEnd(int fileCount, List<IndexEntry> index, long startOffset) {
+        if (index == null) {
+            return "</context>\n";
+        }
+        StringBuilder sb = new StringBuilder("<index>\n");
+        for (IndexEntry entry : index) {
+            sb.append("<entry path=\"").append(escapeAttribute(entry.getPath()))
+                    .append("\" offset=\"").append(entry.getOffset())
+                    .append("\" length=\"").append(entry.getLength()).append("\"/>\n");
+        }
+        sb.append("</index>\n</context>\n");
+        sb.append(String.format("<!-- INDEX OFFSET: %020d -->\n", startOffset));
+        return sb.toString();
+    }
+
+    /**
+     * Kontrolltegn (unntatt tab, linjeskift og CR) og U+FFFE/U+FFFF kan ikke stå i et XML 1.0-dokument,
+     * verken escapet eller i CDATA. De byttes med erstatningstegnet, så dokumentet alltid kan parses.
+     */
+    private static String replaceInvalidCharacters(String value) {
+        int first = 0;
+        while (first < value.length() && isValidXmlChar(value.charAt(first))) {
+            first++;
+        }
+        if (first == value.length()) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        sb.append(value, 0, first);
+        for (int i = first; i < value.length(); i++) {
+            char c = value.charAt(i);
+            sb.append(isValidXmlChar(c) ? c : '\uFFFD');
+        }
+        return sb.toString();
+    }
+
+    private static boolean isValidXmlChar(char c) {
+        return c >= 0x20 ? c != 0xFFFE && c != 0xFFFF : c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static String escapeAttribute(String value) {
+        return replaceInvalidCharacters(value).replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;");
+    }
+}
@@ -2,6 +2,10 @@ package com.contextweaver.app.view;
 
 import com.contextweaver.app.controller.MainController;
 import com.contextweaver.app.model.FileNode;
+import com.contextweaver.app.model.WorkspaceRoot;
+import com.contextweaver.app.service.format.OutputFormat;
+import com.contextweaver.app.service.format.OutputFormats;
+import javafx.geometry.Pos;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -30,6 +34,15 @@ public class MainView {
     private final Button deselectAllButton;
     private final ToggleButton toggleFoldersButton;
     private final ComboBox<String> filterModeComboBox;
+    private final TextField baseRefField;
+    private final ListView<WorkspaceRoot> rootListView;
+    private final Button addRootButton;
+    private final Button removeRootButton;
+    private final ComboBox<String> outputFormatComboBox;
+    private final CheckBox includeIndexCheckBox;
+    private final CheckBox outlineAllCheckBox;
+    private final CheckBox deduplicateCheckBox;
+    private final MenuItem toggleOutlineMenuItem;
 
     public MainView(Stage primaryStage) {
         root = new BorderPane();
@@ -41,6 +54,9 @@ public class MainView {
         fileTreeView.setShowRoot(true);
         fileTreeView.setCellFactory(CheckBoxTreeCell.forTreeView());
         fileTreeView.getStyleClass().add("file-tree");
+
+        toggleOutlineMenuItem = new MenuItem("Veksle outline (kun signaturer)");
+        fileTreeView.setContextMenu(new ContextMenu(toggleOutlineMenuItem));
         root.setCenter(fileTreeView);
 
         // --- TOPP: Valg av prosjektmappe + info ---
@@ -55,7 +71,10 @@ public class MainView {
         selectedPathLabel.setWrapText(true);
         HBox.setHgrow(selectedPathLabel, Priority.ALWAYS);
 
-        Tooltip selectDirTooltip = new Tooltip("Velg rotmappen til prosjektet (f.eks. der .git-mappen ligger).");
+        Tooltip selectDirTooltip = new Tooltip(
+                "Velg rotmappen til prosjektet (f.eks. der .git-mappen ligger).\n" +
+                        "Erstatter nåværende arbeidsområde. Bruk 'Legg til rot…' for å veve flere mapper sammen."
+        );
         selectDirButton.setTooltip(selectDirTooltip);
 
         topBar.getChildren().addAll(selectDirButton, selectedPathLabel);
@@ -68,13 +87,39 @@ public class MainView {
         rightPanel.getStyleClass().add("right-panel");
         rightPanel.setMinWidth(260);
 
+        // Arbeidsområde-seksjon (én eller flere rotmapper)
+        Label workspaceTitle = new Label("Arbeidsområde");
+        workspaceTitle.getStyleClass().add("panel-title");
+
+        rootListView = new ListView<>();
+        rootListView.setPrefHeight(90);
+        rootListView.setPlaceholder(new Label("Ingen mapper valgt."));
+
+        addRootButton = new Button("Legg til rot…");
+        addRootButton.setMaxWidth(Double.MAX_VALUE);
+        addRootButton.setTooltip(new Tooltip(
+                "Legg til en ekstra prosjektmappe (f.eks. en annen checkout) i arbeidsområdet.\n" +
+                        "Alle røtter skannes samtidig og veves sammen med rot-navn foran stiene."
+        ));
+
+        removeRootButton = new Button("Fjern rot");
+        removeRootButton.setMaxWidth(Double.MAX_VALUE);
+        removeRootButton.setTooltip(new Tooltip("Fjern valgt rotmappe fra arbeidsområdet."));
+
+        HBox rootButtons = new HBox(10, addRootButton, removeRootButton);
+        HBox.setHgrow(addRootButton, Priority.ALWAYS);
+        HBox.setHgrow(removeRootButton, Priority.ALWAYS);
+
+        Separator workspaceSeparator = new Separator();
+
         // Filtrering-seksjon
         Label filterTitle = new Label("Filtrering");
         filterTitle.getStyleClass().add("panel-title");
 
         Label filterDescription = new Label(
                 "Velg hvordan filtreet skal bygges. Smart filtrering skjuler cache-, build- og " +
-                        "mellomfiler. 'Vis alle' viser også migrations, cache osv."
+                        "mellomfiler. 'Vis alle' viser også migrations, cache osv. " +
+                        "Gjelder valgt rot i arbeidsområdet (eller alle røtter hvis ingen er valgt)."
         );
         filterDescription.setWrapText(true);
         filterDescription.getStyleClass().add("panel-description");
@@ -82,7 +127,8 @@ public class MainView {
         filterModeComboBox = new ComboBox<>();
         filterModeComboBox.getItems().addAll(
                 "Smart filtrering (anbefalt)",
-                "Vis alle filer (inkl. cache/migrations)"
+                "Vis alle filer (inkl. cache/migrations)",
+                "Kun endrede filer (git)"
         );
         filterModeComboBox.getSelectionModel().selectFirst();
         filterModeComboBox.setMaxWidth(Double.MAX_VALUE);
@@ -90,10 +136,21 @@ public class MainView {
         Tooltip filterTooltip = new Tooltip(
                 "Smart filtrering: skjuler støy som node_modules, .next, __pycache__, venv, build osv.\n" +
                         "Vis alle filer: tar med nesten alt, slik at du får full oversikt.\n" +
+                        "Kun endrede filer: leser git-status og laster bare endrede filer og mappene deres.\n" +
                         "Binærfiler, media og .env-filer holdes uansett utenfor."
         );
         filterModeComboBox.setTooltip(filterTooltip);
 
+        baseRefField = new TextField();
+        baseRefField.setPromptText("Base-ref for git-modus (standard: HEAD)");
+        baseRefField.setMaxWidth(Double.MAX_VALUE);
+        Tooltip baseRefTooltip = new Tooltip(
+                "Brukes kun i 'Kun endrede filer (git)'.\n" +
+                        "Skriv f.eks. main for å se alt som er endret på branchen siden den gikk ut fra main.\n" +
+                        "Trykk Enter for å laste på nytt."
+        );
+        baseRefField.setTooltip(baseRefTooltip);
+
         Separator filterSeparator = new Separator();
 
         // Presets-seksjon
@@ -146,9 +203,14 @@ public class MainView {
         summaryHint.getStyleClass().add("panel-hint");
 
         rightPanel.getChildren().addAll(
+                workspaceTitle,
+                rootListView,
+                rootButtons,
+                workspaceSeparator,
                 filterTitle,
                 filterDescription,
                 filterModeComboBox,
+                baseRefField,
                 filterSeparator,
                 presetsTitle,
                 presetsDescription,
@@ -162,14 +224,48 @@ public class MainView {
         );
         root.setRight(rightPanel);
 
-        // --- BUNN: Generer-knapp + status ---
+        // --- BUNN: Format + generer-knapp + status ---
         VBox bottomBar = new VBox(10);
 
+        Label outputFormatLabel = new Label("Format:");
+        outputFormatComboBox = new ComboBox<>();
+        for (OutputFormat format : OutputFormats.all()) {
+            outputFormatComboBox.getItems().add(format.getDisplayName());
+        }
+        outputFormatComboBox.getSelectionModel().selectFirst();
+        outputFormatComboBox.setTooltip(new Tooltip(
+                "Ren tekst: det klassiske START/END-formatet.\n" +
+                        "Markdown: én kodeblokk per fil. XML: ett <file>-element per fil. JSON Lines: én linje per fil."
+        ));
+
+        includeIndexCheckBox = new CheckBox("Legg til byte-offset-indeks");
+        includeIndexCheckBox.setTooltip(new Tooltip(
+                "Legger til en indeks til slutt med byte-posisjonen til hver fil.\n" +
+                        "Lar verktøy hoppe rett til én fil i store filer uten å lese alt."
+        ));
+
+        outlineAllCheckBox = new CheckBox("Kun signaturer (outline)");
+        outlineAllCheckBox.setTooltip(new Tooltip(
+                "Vev Java-, Kotlin-, TypeScript- og Python-filer som outline: imports, typer, felt og\n" +
+                        "metodesignaturer, med metodekropper erstattet av en markør.\n" +
+                        "Enkeltfiler kan også merkes via høyreklikk i filtreet."
+        ));
+
+        deduplicateCheckBox = new CheckBox("Slå sammen like filer");
+        deduplicateCheckBox.setTooltip(new Tooltip(
+                "Filer med nøyaktig samme innhold (kopierte biblioteker, genererte filer, konfig) tas med én gang.\n" +
+                        "Senere kopier skrives som en kort referanse til den første. Sammendraget viser hvor mye som spares."
+        ));
+
+        HBox outputOptionsBox = new HBox(10, outputFormatLabel, outputFormatComboBox, includeIndexCheckBox, outlineAllCheckBox,
+                deduplicateCheckBox);
+        outputOptionsBox.setAlignment(Pos.CENTER_LEFT);
+
         generateButton = new Button("Weave Context");
         generateButton.setMaxWidth(Double.MAX_VALUE);
         generateButton.getStyleClass().add("generate-button");
         Tooltip generateTooltip = new Tooltip(
-                "Generer én samlet .txt-fil med innholdet i alle valgte filer.\n" +
+                "Generer én samlet fil med innholdet i alle valgte filer.\n" +
                         "Klar til å limes rett inn i ChatGPT, Claude, Gemini, osv."
         );
         generateButton.setTooltip(generateTooltip);
@@ -186,7 +282,7 @@ public class MainView {
 
         statusBox.getChildren().addAll(statusLabel, progressBar);
 
-        bottomBar.getChildren().addAll(generateButton, statusBox);
+        bottomBar.getChildren().addAll(outputOptionsBox, generateButton, statusBox);
         root.setBottom(bottomBar);
         BorderPane.setMargin(bottomBar, new Insets(15, 0, 0, 0));
 
@@ -220,4 +316,13 @@ public class MainView {
     public BorderPane getRoot() { return root; }
     public ToggleButton getToggleFoldersButton() { return toggleFoldersButton; }
     public ComboBox<String> getFilterModeComboBox() { return filterModeComboBox; }
+    public TextField getBaseRefField() { return baseRefField; }
+    public ListView<WorkspaceRoot> getRootListView() { return rootListView; }
+    public Button getAddRootButton() { return addRootButton; }
+    public Button getRemoveRootButton() { return removeRootButton; }
+    public ComboBox<String> getOutputFormatComboBox() { return outputFormatComboBox; }
+    public CheckBox getIncludeIndexCheckBox() { return includeIndexCheckBox; }
+    public CheckBox getOutlineAllCheckBox() { return outlineAllCheckBox; }
+    public CheckBox getDeduplicateCheckBox() { return deduplicateCheckBox; }
+    public MenuItem getToggleOutlineMenuItem() { return toggleOutlineMenuItem; }
 }
@@ -0,0 +1,64 @@
+package com.contextweaver.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentCacheTest {
+
+    private static final Path A = Path.of("a.txt");
+    private static final Path B = Path.of("b.txt");
+    private static final Path C = Path.of("c.txt");
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        SegmentCache cache = new SegmentCache(10);
+        cache.put(A, 1, 1, "k", new byte[4]);
+        cache.put(B, 1, 1, "k", new byte[4]);
+        // A brukes, så B er nå minst nylig brukt
+        assertNotNull(cache.get(A, 1, 1, "k"));
+
+        assertTrue(cache.put(C, 1, 1, "k", new byte[4]));
+        assertNotNull(cache.get(A, 1, 1, "k"));
+        assertNull(cache.get(B, 1, 1, "k"));
+        assertNotNull(cache.get(C, 1, 1, "k"));
+        assertEquals(8, cache.totalBytes());
+    }
+
+    @Test
+    void refusesSegmentLargerThanTheWholeCache() {
+        SegmentCache cache = new SegmentCache(10);
+        cache.put(A, 1, 1, "k", new byte[4]);
+        assertFalse(cache.put(B, 1, 1, "k", new byte[11]));
+        assertNotNull(cache.get(A, 1, 1, "k"));
+    }
+
+    @Test
+    void differentRenderKeysLiveSideBySide() {
+        SegmentCache cache = new SegmentCache(100);
+        cache.put(A, 1, 1, "markdown", new byte[]{1});
+        cache.put(A, 1, 1, "xml", new byte[]{2});
+        assertArrayEquals(new byte[]{1}, cache.get(A, 1, 1, "markdown"));
+        assertArrayEquals(new byte[]{2}, cache.get(A, 1, 1, "xml"));
+        assertNull(cache.get(A, 2, 1, "xml"));
+    }
+
+    @Test
+    void retainOnlyKeepsAllRenderingsOfSelectedFiles() {
+        SegmentCache cache = new SegmentCache(100);
+        cache.put(A, 1, 1, "markdown", new byte[3]);
+        cache.put(A, 1, 1, "xml", new byte[3]);
+        cache.put(B, 1, 1, "xml", new byte[3]);
+        cache.retainOnly(List.of(A));
+        assertEquals(2, cache.size());
+        assertEquals(6, cache.totalBytes());
+    }
+}
@@ -0,0 +1,313 @@
+package com.contextweaver.app.service;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Input -> outline for hvert språk. Hver test holder fast én ting outlineren skal klare (eller en feil vi har hatt).
+ */
+class SourceOutlinerTest {
+
+    private static String outline(String fileName, String... lines) {
+        return SourceOutliner.outline(Path.of(fileName), String.join("\n", lines));
+    }
+
+    private static String lines(String... lines) {
+        return String.join("\n", lines);
+    }
+
+    @Nested
+    class Java {
+
+        @Test
+        void replacesMethodBodiesAndKeepsSignatures() {
+            assertEquals(lines(
+                    "package a;",
+                    "import java.util.List;",
+                    "public class A extends B implements C {",
+                    "    private int x = 1;",
+                    "    public A(int x) { /* ... */ }",
+                    "    public List<String> names() throws Exception { /* ... */ }",
+                    "}"
+            ), outline("A.java",
+                    "package a;",
+                    "import java.util.List;",
+                    "public class A extends B implements C {",
+                    "    private int x = 1;",
+                    "    public A(int x) { this.x = x; }",
+                    "    public List<String> names() throws Exception { return List.of(\"secret\"); }",
+                    "}"));
+        }
+
+        @Test
+        void methodNamedLikeTypeKeywordIsNotATypeBody() {
+            String result = outline("Log.java",
+                    "class Log {",
+                    "    public void record(Event e) { String secret = e.toString(); }",
+                    "    Object object(int x) { return secret(); }",
+                    "}");
+            assertEquals(lines(
+                    "class Log {",
+                    "    public void record(Event e) { /* ... */ }",
+                    "    Object object(int x) { /* ... */ }",
+                    "}"), result);
+        }
+
+        @Test
+        void keepsAnnotationValuesArrayInitializersAndDefaults() {
+            String source = lines(
+                    "@Target({ElementType.TYPE, ElementType.METHOD})",
+                    "public @interface Tags {",
+                    "    String[] value() default {\"a\", \"b\"};",
+                    "    int[] XS = {1, 2, 3};",
+                    "    int[][] GRID = {{1, 2}, {3}};",
+                    "}");
+            assertEquals(source, outline("Tags.java", source));
+        }
+
+        @Test
+        void bracesInStringsCommentsAndTextBlocksDoNotConfuseIt() {
+            assertEquals(lines(
+                    "class S {",
+                    "    String open = \"{\"; // }",
+                    "    char close = '}'; /* { */",
+                    "    String block = \"\"\"",
+                    "        { \"json\": } }",
+                    "        \"\"\";",
+                    "    void f() { /* ... */ }",
+                    "}"
+            ), outline("S.java",
+                    "class S {",
+                    "    String open = \"{\"; // }",
+                    "    char close = '}'; /* { */",
+                    "    String block = \"\"\"",
+                    "        { \"json\": } }",
+                    "        \"\"\";",
+                    "    void f() { String s = \"}\"; String t = \"\"\"",
+                    "        {{ secret",
+                    "        \"\"\"; }",
+                    "}"));
+        }
+
+        @Test
+        void elidesInitializerBlocksLambdasAndAnonymousClasses() {
+            assertEquals(lines(
+                    "class I {",
+                    "    static { /* ... */ }",
+                    "    { /* ... */ }",
+                    "    Runnable r = () -> { /* ... */ };",
+                    "    Runnable q = new Runnable() { /* ... */ };",
+                    "}"
+            ), outline("I.java",
+                    "class I {",
+                    "    static { secret(); }",
+                    "    { secret(); }",
+                    "    Runnable r = () -> { secret(); };",
+                    "    Runnable q = new Runnable() { public void run() { secret(); } };",
+                    "}"));
+        }
+
+        @Test
+        void keepsNestedTypesEnumsAndRecords() {
+            assertEquals(lines(
+                    "class Outer {",
+                    "    enum Color { RED, GREEN; Color next() { /* ... */ } }",
+                    "    record Point(int x, int y) { Point { /* ... */ } }",
+                    "    static class Inner { void g() { /* ... */ } }",
+                    "}"
+            ), outline("Outer.java",
+                    "class Outer {",
+                    "    enum Color { RED, GREEN; Color next() { return RED; } }",
+                    "    record Point(int x, int y) { Point { if (x < 0) throw new IllegalArgumentException(); } }",
+                    "    static class Inner { void g() { secret(); } }",
+                    "}"));
+        }
+    }
+
+    @Nested
+    class Kotlin {
+
+        @Test
+        void functionNamedLikeTypeKeywordIsNotATypeBody() {
+            assertEquals(lines(
+                    "class Registry {",
+                    "    fun module(name: String): Module { /* ... */ }",
+                    "    fun record(e: Event) { /* ... */ }",
+                    "}"
+            ), outline("Registry.kt",
+                    "class Registry {",
+                    "    fun module(name: String): Module { val secret = load(name); return secret }",
+                    "    fun record(e: Event) { secret(e) }",
+                    "}"));
+        }
+
+        @Test
+        void keepsClassesObjectsAndFunInterfaces() {
+            assertEquals(lines(
+                    "data class User(val name: String = \"\") : Base() {",
+                    "    companion object {",
+                    "        fun create(): User { /* ... */ }",
+                    "    }",
+                    "    init { /* ... */ }",
+                    "}",
+                    "fun interface Handler { fun handle(x: Int): Int }",
+                    "object Config : Settings { val raw = \"\"\"{ }\"\"\" }"
+            ), outline("User.kt",
+                    "data class User(val name: String = \"\") : Base() {",
+                    "    companion object {",
+                    "        fun create(): User { return User(\"secret\") }",
+                    "    }",
+                    "    init { require(name != \"secret\") }",
+                    "}",
+                    "fun interface Handler { fun handle(x: Int): Int }",
+                    "object Config : Settings { val raw = \"\"\"{ }\"\"\" }"));
+        }
+    }
+
+    @Nested
+    class TypeScript {
+
+        @Test
+        void keepsTypeAliasesAndInlineObjectTypes() {
+            String source = lines(
+                    "export type Props = { foo: string; bar: { x: number } };",
+                    "export interface Options {",
+                    "    nested: { x: number; y: string };",
+                    "    lookup: Map<string, { a: number }>;",
+                    "}");
+            assertEquals(source, outline("types.ts", source));
+        }
+
+        @Test
+        void keepsParameterAndReturnTypeLiterals() {
+            assertEquals(lines(
+                    "export function f(opts: { x: number }): Promise<{ ok: boolean }> { /* ... */ }",
+                    "export class C {",
+                    "    run(opts: { x: number }): { y: number } { /* ... */ }",
+                    "}"
+            ), outline("f.ts",
+                    "export function f(opts: { x: number }): Promise<{ ok: boolean }> { return secret(opts); }",
+                    "export class C {",
+                    "    run(opts: { x: number }): { y: number } { return { y: secret() }; }",
+                    "}"));
+        }
+
+        @Test
+        void regexLiteralsWithBracesDoNotSwallowTheRestOfTheClass() {
+            assertEquals(lines(
+                    "export class Template {",
+                    "    render(s: string): string { /* ... */ }",
+                    "    secretHelper(): void { /* ... */ }",
+                    "}"
+            ), outline("template.ts",
+                    "export class Template {",
+                    "    render(s: string): string {",
+                    "        return s.replace(/\\{(\\w+)\\}/g, (m, k) => k).replace(/{/g, '').replace(/[}/]/, '');",
+                    "    }",
+                    "    secretHelper(): void { const half = total / 2; const q = half / 3; }",
+                    "}"));
+        }
+
+        @Test
+        void templateLiteralsWithNestedBracesAndStrings() {
+            assertEquals(lines(
+                    "export const greet = (name: string) => { /* ... */ };",
+                    "export function other(): void { /* ... */ }"
+            ), outline("greet.ts",
+                    "export const greet = (name: string) => { return `hi ${name ? { a: \"}\" }.a : `${'{'}`}`; };",
+                    "export function other(): void { secret(); }"));
+        }
+
+        @Test
+        void keepsImportExportListsAndElidesArrowFields() {
+            assertEquals(lines(
+                    "import { a, b } from './x';",
+                    "export { a, b };",
+                    "export class Store {",
+                    "    handler = debounce(() => { /* ... */ }, 100);",
+                    "    get size(): number { /* ... */ }",
+                    "}"
+            ), outline("store.ts",
+                    "import { a, b } from './x';",
+                    "export { a, b };",
+                    "export class Store {",
+                    "    handler = debounce(() => { secret(); }, 100);",
+                    "    get size(): number { return secret(); }",
+                    "}"));
+        }
+
+        @Test
+        void returnsContentUnchangedWhenBracesDoNotBalance() {
+            String source = lines(
+                    "export class Broken {",
+                    "    f(): void { if (x) {",
+                    "}");
+            assertEquals(source, outline("broken.ts", source));
+        }
+    }
+
+    @Nested
+    class Python {
+
+        @Test
+        void keepsDecoratorsSignaturesAndOneLiners() {
+            assertEquals(lines(
+                    "import os",
+                    "",
+                    "class Service:",
+                    "    @property",
+                    "    def name(self) -> str:",
+                    "        ...",
+                    "",
+                    "    def short(self): return 1",
+                    "",
+                    "    @staticmethod",
+                    "    def create(",
+                    "        a: int,",
+                    "        b: int,",
+                    "    ) -> \"Service\":",
+                    "        ..."
+            ), outline("service.py",
+                    "import os",
+                    "",
+                    "class Service:",
+                    "    @property",
+                    "    def name(self) -> str:",
+                    "        return os.environ[\"SECRET\"]",
+                    "",
+                    "    def short(self): return 1",
+                    "",
+                    "    @staticmethod",
+                    "    def create(",
+                    "        a: int,",
+                    "        b: int,",
+                    "    ) -> \"Service\":",
+                    "        \"\"\"Docstring",
+                    "def not_a_def(): inside the docstring",
+                    "        \"\"\"",
+                    "        return Service()"));
+        }
+
+        @Test
+        void commentAtLowerIndentDoesNotEndBody() {
+            String result = outline("f.py",
+                    "def f(x):",
+                    "    y = 1",
+                    "# note",
+                    "    return secret(y)",
+                    "",
+                    "# Hjelper for g",
+                    "def g():",
+                    "    pass");
+            assertFalse(result.contains("secret"));
+            assertFalse(result.contains("# note"));
+            assertTrue(result.contains("# Hjelper for g\ndef g():"));
+        }
+    }
+}